@@ -0,0 +1,140 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.genivi.commonapi.dbus.benchmark.BenchmarkRunner.Result;
+
+/**
+ * Runs the benchmarks of the D-Bus generator on a synthetic model.
+ *
+ * The generator depends on the OSGi runtime, therefore the benchmarks run as
+ * an Eclipse application:
+ *
+ * <pre>
+ * eclipse -application org.genivi.commonapi.dbus.benchmark.application
+ *         [-interfaces N] [-methods M] [-depth D] [-workspace K]
+ *         [-warmup W] [-iterations I] [-time MS]
+ *         [-benchmark REGEX] [-csv FILE]
+ * </pre>
+ */
+public class BenchmarkApplication implements IApplication {
+
+	private int interfaces = 10;
+	private int methods = 10;
+	private int depth = 3;
+	private int workspaceModels = 1000;
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationTime = 1000;
+	private String filter = null;
+	private String csvFile = null;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		try {
+			parseArguments(args != null ? args : new String[0]);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+
+		File directory = Files.createTempDirectory("commonapi-dbus-benchmark").toFile();
+		SyntheticModel model = new SyntheticModel(directory, interfaces, methods, depth);
+		model.setWorkspaceModels(workspaceModels);
+		try {
+			model.write();
+			System.out.println("Model: " + model.getDescription());
+
+			BenchmarkRunner runner = new BenchmarkRunner();
+			runner.setWarmupIterations(warmupIterations);
+			runner.setIterations(iterations);
+			runner.setIterationTime(iterationTime);
+			new GeneratorBenchmarks(model).addTo(runner);
+
+			List<Result> results = runner.run(filter);
+			printResults(results);
+			if (csvFile != null) {
+				writeResults(results, csvFile);
+			}
+		} finally {
+			model.delete();
+		}
+		return IApplication.EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+			try {
+				if (option.equals("-interfaces")) {
+					interfaces = Integer.parseInt(value);
+				} else if (option.equals("-methods")) {
+					methods = Integer.parseInt(value);
+				} else if (option.equals("-depth")) {
+					depth = Integer.parseInt(value);
+				} else if (option.equals("-workspace")) {
+					workspaceModels = Integer.parseInt(value);
+				} else if (option.equals("-warmup")) {
+					warmupIterations = Integer.parseInt(value);
+				} else if (option.equals("-iterations")) {
+					iterations = Integer.parseInt(value);
+				} else if (option.equals("-time")) {
+					iterationTime = Long.parseLong(value);
+				} else if (option.equals("-benchmark")) {
+					filter = value;
+				} else if (option.equals("-csv")) {
+					csvFile = value;
+				} else {
+					throw new IllegalArgumentException("Unknown option " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+			}
+		}
+	}
+
+	private void printResults(List<Result> results) {
+		System.out.println(String.format(Locale.ROOT, "%-16s %14s %12s %14s %14s %12s", "Benchmark", "ops/s",
+				"error", "bytes/op", "alloc MB/s", "peak MB"));
+		for (Result result : results) {
+			System.out.println(String.format(Locale.ROOT, "%-16s %14.3f %12.3f %14.0f %14.1f %12.1f", result.name,
+					result.opsPerSecond, result.opsPerSecondError, result.allocatedBytesPerOp,
+					result.allocationRate / (1024 * 1024), result.peakHeap / (1024.0 * 1024)));
+		}
+	}
+
+	private void writeResults(List<Result> results, String fileName) throws IOException {
+		try (PrintWriter writer = new PrintWriter(
+				new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+			writer.println("benchmark,interfaces,methods,depth,workspace,opsPerSecond,error,bytesPerOp,allocBytesPerSecond,peakHeapBytes");
+			for (Result result : results) {
+				writer.println(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.3f,%.3f,%.0f,%.0f,%d", result.name,
+						interfaces, methods, depth, workspaceModels, result.opsPerSecond, result.opsPerSecondError,
+						result.allocatedBytesPerOp, result.allocationRate, result.peakHeap));
+			}
+		}
+	}
+}
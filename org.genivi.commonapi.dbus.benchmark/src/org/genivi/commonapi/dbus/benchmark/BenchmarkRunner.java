@@ -0,0 +1,204 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs workloads in timed iterations and measures their throughput, the
+ * allocation rate of the benchmark thread and the peak heap usage.
+ *
+ * Each workload first runs the warmup iterations, whose results are
+ * discarded. Then the measurement iterations are executed. An iteration
+ * repeats the workload until the iteration time elapsed.
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * A single operation to be measured. The returned value is consumed to
+	 * keep the computation from being optimized away.
+	 */
+	public interface Workload {
+		Object run() throws Exception;
+	}
+
+	/**
+	 * The measured values of a workload.
+	 */
+	public static class Result {
+		public final String name;
+		public final double opsPerSecond;
+		public final double opsPerSecondError;
+		public final double allocatedBytesPerOp;
+		public final double allocationRate;
+		public final long peakHeap;
+
+		Result(String name, double opsPerSecond, double opsPerSecondError, double allocatedBytesPerOp,
+				double allocationRate, long peakHeap) {
+			this.name = name;
+			this.opsPerSecond = opsPerSecond;
+			this.opsPerSecondError = opsPerSecondError;
+			this.allocatedBytesPerOp = allocatedBytesPerOp;
+			this.allocationRate = allocationRate;
+			this.peakHeap = peakHeap;
+		}
+	}
+
+	private final Map<String, Workload> workloads = new LinkedHashMap<String, Workload>();
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationTime = 1000;
+	private volatile int sink;
+
+	public void add(String name, Workload workload) {
+		workloads.put(name, workload);
+	}
+
+	public void setWarmupIterations(int warmupIterations) {
+		this.warmupIterations = warmupIterations;
+	}
+
+	public void setIterations(int iterations) {
+		this.iterations = Math.max(1, iterations);
+	}
+
+	/**
+	 * @param iterationTime
+	 *            the minimal duration of an iteration in milliseconds
+	 */
+	public void setIterationTime(long iterationTime) {
+		this.iterationTime = iterationTime;
+	}
+
+	/**
+	 * Run all workloads whose name matches the filter.
+	 *
+	 * @param filter
+	 *            a regular expression or null to run all workloads
+	 */
+	public List<Result> run(String filter) throws Exception {
+		List<Result> results = new ArrayList<Result>();
+		for (Map.Entry<String, Workload> entry : workloads.entrySet()) {
+			if (filter == null || entry.getKey().matches(filter)) {
+				results.add(run(entry.getKey(), entry.getValue()));
+			}
+		}
+		return results;
+	}
+
+	private Result run(String name, Workload workload) throws Exception {
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(workload);
+		}
+
+		System.gc();
+		resetPeakHeap();
+
+		double[] throughput = new double[iterations];
+		long operations = 0;
+		long allocated = 0;
+		long elapsed = 0;
+		for (int i = 0; i < iterations; i++) {
+			long allocatedBefore = getAllocatedBytes();
+			long start = System.nanoTime();
+			long itsOperations = runIteration(workload);
+			long itsElapsed = System.nanoTime() - start;
+			allocated += getAllocatedBytes() - allocatedBefore;
+			operations += itsOperations;
+			elapsed += itsElapsed;
+			throughput[i] = itsOperations * 1e9 / itsElapsed;
+		}
+
+		double mean = 0;
+		for (double value : throughput) {
+			mean += value;
+		}
+		mean /= iterations;
+		double variance = 0;
+		for (double value : throughput) {
+			variance += (value - mean) * (value - mean);
+		}
+		double error = (iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0);
+
+		return new Result(name, mean, error, (double) allocated / operations, allocated * 1e9 / elapsed,
+				getPeakHeap());
+	}
+
+	private long runIteration(Workload workload) throws Exception {
+		long operations = 0;
+		long end = System.nanoTime() + iterationTime * 1000000L;
+		do {
+			Object result = workload.run();
+			sink += (result != null ? result.hashCode() : 0);
+			operations++;
+		} while (System.nanoTime() < end);
+		return operations;
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+	/**
+	 * The allocated bytes are only available from the extension of the
+	 * HotSpot VM, which is not visible to all bundles.
+	 */
+	private static Method getAllocatedBytesMethod() {
+		try {
+			Class<?> itsClass = Class.forName("com.sun.management.ThreadMXBean");
+			if (itsClass.isInstance(THREADS)
+					&& Boolean.TRUE.equals(itsClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(THREADS))) {
+				return itsClass.getMethod("getThreadAllocatedBytes", long.class);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// allocations are not measured
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread or 0, if the
+	 *         JVM does not support allocation measurement
+	 */
+	private static long getAllocatedBytes() {
+		if (ALLOCATED_BYTES == null) {
+			return 0;
+		}
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return 0;
+		}
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * The peaks of the pools are summed up, which gives an upper bound of the
+	 * peak heap usage.
+	 */
+	private static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
@@ -0,0 +1,307 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.generator.InMemoryFileSystemAccess;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.eclipse.xtext.validation.AbstractValidationMessageAcceptor;
+import org.franca.core.dsl.FrancaIDLRuntimeModule;
+import org.franca.core.franca.FAttribute;
+import org.franca.core.franca.FBroadcast;
+import org.franca.core.franca.FInterface;
+import org.franca.core.franca.FMethod;
+import org.franca.core.franca.FModel;
+import org.franca.deploymodel.core.FDeployedInterface;
+import org.franca.deploymodel.dsl.fDeploy.FDInterface;
+import org.franca.deploymodel.dsl.fDeploy.FDTypes;
+import org.genivi.commonapi.dbus.benchmark.BenchmarkRunner.Workload;
+import org.genivi.commonapi.dbus.deployment.PropertyAccessor;
+import org.genivi.commonapi.dbus.generator.DeploymentIndex;
+import org.genivi.commonapi.dbus.generator.DeploymentMerge;
+import org.genivi.commonapi.dbus.generator.FrancaDBusGenerator;
+import org.genivi.commonapi.dbus.generator.FrancaDBusGeneratorExtensions;
+import org.genivi.commonapi.dbus.generator.ModelDependencies;
+import org.genivi.commonapi.dbus.verification.AllInfoMapsBuilder;
+import org.genivi.commonapi.dbus.verification.Triple;
+import org.genivi.commonapi.dbus.verification.ValidatorDBus;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * The workloads of the D-Bus generator benchmark. All of them operate on the
+ * same synthetic model, which is loaded once before the measurement starts.
+ */
+public class GeneratorBenchmarks {
+
+	private final SyntheticModel model;
+	private final Injector injector;
+	private final Resource deployment;
+	private final List<FModel> interfaceModels = new ArrayList<FModel>();
+	private final List<FDInterface> interfaceDeployments = new ArrayList<FDInterface>();
+	private final DeploymentIndex coreDeployments = new DeploymentIndex();
+
+	/**
+	 * Counts the validation messages instead of reporting them.
+	 */
+	private static class CountingMessageAcceptor extends AbstractValidationMessageAcceptor {
+		int messages = 0;
+
+		@Override
+		public void acceptError(String message, EObject object, EStructuralFeature feature, int index,
+				String code, String... issueData) {
+			messages++;
+		}
+
+		@Override
+		public void acceptWarning(String message, EObject object, EStructuralFeature feature, int index,
+				String code, String... issueData) {
+			messages++;
+		}
+
+		@Override
+		public void acceptInfo(String message, EObject object, EStructuralFeature feature, int index,
+				String code, String... issueData) {
+			messages++;
+		}
+	}
+
+	public GeneratorBenchmarks(SyntheticModel model) {
+		this.model = model;
+		injector = Guice.createInjector(new FrancaIDLRuntimeModule());
+
+		XtextResourceSet resourceSet = injector.getProvider(XtextResourceSet.class).get();
+		for (String file : model.getInterfaceFiles()) {
+			Resource resource = resourceSet.getResource(URI.createFileURI(file), true);
+			interfaceModels.add((FModel) resource.getContents().get(0));
+		}
+		deployment = resourceSet.getResource(URI.createFileURI(model.getDeploymentFile()), true);
+		for (EObject element : deployment.getContents().get(0).eContents()) {
+			if (element instanceof FDInterface) {
+				interfaceDeployments.add((FDInterface) element);
+			}
+		}
+		Resource coreDeployment = resourceSet.getResource(URI.createFileURI(model.getCoreDeploymentFile()), true);
+		for (EObject element : coreDeployment.getContents().get(0).eContents()) {
+			if (element instanceof FDInterface) {
+				coreDeployments.addInterface((FDInterface) element);
+			} else if (element instanceof FDTypes) {
+				coreDeployments.addTypeCollection((FDTypes) element);
+			}
+		}
+	}
+
+	public void addTo(BenchmarkRunner runner) {
+		runner.add("generate", createGenerate());
+		runner.add("validate", createValidate());
+		runner.add("buildAllInfos", createBuildAllInfos());
+		runner.add("signatures", createSignatures());
+		runner.add("deploymentIndex", createDeploymentIndex());
+		runner.add("deploymentMerge", createDeploymentMerge());
+		runner.add("deploymentMergeAll", createDeploymentMergeAll());
+		runner.add("packagePrefix", createPackagePrefix());
+		runner.add("packagePrefixScan", createPackagePrefixScan());
+	}
+
+	/**
+	 * Generate the code for all interfaces of the deployment into memory.
+	 */
+	private Workload createGenerate() {
+		final FrancaDBusGenerator generator = injector.getInstance(FrancaDBusGenerator.class);
+		return new Workload() {
+			@Override
+			public Object run() {
+				InMemoryFileSystemAccess fileSystemAccess = new InMemoryFileSystemAccess();
+				generator.doGenerate(deployment, fileSystemAccess);
+				return fileSystemAccess.getAllFiles().size();
+			}
+		};
+	}
+
+	/**
+	 * Validate all interface models.
+	 */
+	private Workload createValidate() {
+		final ValidatorDBus validator = new ValidatorDBus();
+		return new Workload() {
+			@Override
+			public Object run() {
+				CountingMessageAcceptor acceptor = new CountingMessageAcceptor();
+				for (FModel itsModel : interfaceModels) {
+					validator.validateModel(itsModel, acceptor);
+				}
+				return acceptor.messages;
+			}
+		};
+	}
+
+	/**
+	 * Index all model files of the model directory.
+	 */
+	private Workload createBuildAllInfos() {
+		final String path = model.getDirectory().getAbsolutePath().replace("\\", "/");
+		return new Workload() {
+			@Override
+			public Object run() {
+				AllInfoMapsBuilder builder = new AllInfoMapsBuilder();
+				builder.buildAllInfos(path);
+				return builder.fastAllInfo.size();
+			}
+		};
+	}
+
+	/**
+	 * Compute the D-Bus signatures of all methods, attributes and broadcasts.
+	 * The accessors are created for each operation, as they are for each
+	 * generation run.
+	 */
+	private Workload createSignatures() {
+		final FrancaDBusGeneratorExtensions extensions = injector.getInstance(FrancaDBusGeneratorExtensions.class);
+		return new Workload() {
+			@Override
+			public Object run() {
+				int length = 0;
+				for (FDInterface itsDeployment : interfaceDeployments) {
+					PropertyAccessor accessor = new PropertyAccessor(new FDeployedInterface(itsDeployment));
+					FInterface itsInterface = itsDeployment.getTarget();
+					for (FMethod method : itsInterface.getMethods()) {
+						length += extensions.dbusInSignature(method, accessor).length();
+						length += extensions.dbusOutSignature(method, accessor).length();
+					}
+					for (FAttribute attribute : itsInterface.getAttributes()) {
+						length += extensions.dbusSignature(attribute, accessor).length();
+					}
+					for (FBroadcast broadcast : itsInterface.getBroadcasts()) {
+						length += extensions.dbusSignature(broadcast, accessor).length();
+					}
+				}
+				return length;
+			}
+		};
+	}
+
+	/**
+	 * Look up the workspace files whose package starts with the package and
+	 * name of each interface, as the whole workspace validation does.
+	 */
+	private Workload createPackagePrefix() {
+		final AllInfoMapsBuilder builder = createWorkspaceIndex();
+		return new Workload() {
+			@Override
+			public Object run() {
+				int found = 0;
+				for (FModel itsModel : interfaceModels) {
+					for (FInterface itsInterface : itsModel.getInterfaces()) {
+						String prefix = itsModel.getName() + "." + itsInterface.getName();
+						for (Set<String> paths : builder.getPackagesStartingWith(prefix).values()) {
+							found += paths.size();
+						}
+					}
+				}
+				return found;
+			}
+		};
+	}
+
+	/**
+	 * The same lookup as a scan over all workspace files, for comparison.
+	 */
+	private Workload createPackagePrefixScan() {
+		final AllInfoMapsBuilder builder = createWorkspaceIndex();
+		return new Workload() {
+			@Override
+			public Object run() {
+				int found = 0;
+				for (FModel itsModel : interfaceModels) {
+					for (FInterface itsInterface : itsModel.getInterfaces()) {
+						String prefix = itsModel.getName() + "." + itsInterface.getName();
+						for (Triple<String, ArrayList<String>, ArrayList<String>> entry : builder.allInfo.values()) {
+							if (entry.packageName != null && entry.packageName.startsWith(prefix)) {
+								found++;
+							}
+						}
+					}
+				}
+				return found;
+			}
+		};
+	}
+
+	private AllInfoMapsBuilder createWorkspaceIndex() {
+		AllInfoMapsBuilder builder = new AllInfoMapsBuilder();
+		builder.buildAllInfos(model.getWorkspaceDirectory().getAbsolutePath().replace("\\", "/"));
+		return builder;
+	}
+
+	/**
+	 * Index the interface deployments by their target and look up the
+	 * deployment of each interface.
+	 */
+	private Workload createDeploymentIndex() {
+		return new Workload() {
+			@Override
+			public Object run() {
+				DeploymentIndex index = new DeploymentIndex();
+				index.addInterfaces(interfaceDeployments);
+				int found = 0;
+				for (FDInterface itsDeployment : interfaceDeployments) {
+					if (index.getInterfaceDeployment(itsDeployment.getTarget()) != null) {
+						found++;
+					}
+				}
+				return found;
+			}
+		};
+	}
+
+	/**
+	 * Merge the Core deployments of the targets each D-Bus deployment uses into
+	 * copies of the D-Bus deployments, as the generator does. Before the
+	 * measurement starts, the result is compared with the merge of all Core
+	 * deployments.
+	 */
+	private Workload createDeploymentMerge() {
+		final DeploymentMerge merge = injector.getInstance(DeploymentMerge.class);
+		final ModelDependencies dependencies = new ModelDependencies();
+		List<String> differences = merge.check(coreDeployments, dependencies, interfaceDeployments,
+				new ArrayList<FDTypes>());
+		if (!differences.isEmpty()) {
+			throw new IllegalStateException("The merge of the matching Core deployments differs for " + differences);
+		}
+		return new Workload() {
+			@Override
+			public Object run() {
+				List<FDInterface> itsDeployments = new ArrayList<FDInterface>(EcoreUtil.copyAll(interfaceDeployments));
+				merge.merge(coreDeployments, dependencies, itsDeployments, new ArrayList<FDTypes>());
+				return itsDeployments.size();
+			}
+		};
+	}
+
+	/**
+	 * The same merge of all Core deployments into every D-Bus deployment, for
+	 * comparison.
+	 */
+	private Workload createDeploymentMergeAll() {
+		final DeploymentMerge merge = injector.getInstance(DeploymentMerge.class);
+		return new Workload() {
+			@Override
+			public Object run() {
+				List<FDInterface> itsDeployments = new ArrayList<FDInterface>(EcoreUtil.copyAll(interfaceDeployments));
+				merge.mergeAll(coreDeployments, itsDeployments, new ArrayList<FDTypes>());
+				return itsDeployments.size();
+			}
+		};
+	}
+}
@@ -0,0 +1,253 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a synthetic Franca model of configurable size into a directory.
+ *
+ * The model consists of one type collection with a chain of structs nested
+ * <code>depth</code> levels deep, <code>interfaces</code> interface files with
+ * <code>methods</code> methods each, one Core deployment for the type collection
+ * and all of the interfaces, and one D-Bus deployment for all of the
+ * interfaces that imports the Core deployment. Optionally, a workspace of small models is written into a sub
+ * directory, every hundredth of them with a package that starts with the
+ * package and name of one of the interfaces.
+ */
+public class SyntheticModel {
+
+	public static final String TYPES_FILE = "Types.fidl";
+	public static final String CORE_DEPLOYMENT_FILE = "CoreDeployment.fdepl";
+	public static final String DEPLOYMENT_FILE = "Deployment.fdepl";
+	public static final String WORKSPACE_DIRECTORY = "workspace";
+
+	private final File directory;
+	private final int interfaces;
+	private final int methods;
+	private final int depth;
+	private int workspaceModels = 0;
+	private final List<String> interfaceFiles = new ArrayList<String>();
+
+	public SyntheticModel(File directory, int interfaces, int methods, int depth) {
+		this.directory = directory;
+		this.interfaces = interfaces;
+		this.methods = methods;
+		this.depth = Math.max(1, depth);
+	}
+
+	/**
+	 * @param workspaceModels
+	 *            the number of models to write into the workspace directory
+	 */
+	public void setWorkspaceModels(int workspaceModels) {
+		this.workspaceModels = workspaceModels;
+	}
+
+	public File getWorkspaceDirectory() {
+		return new File(directory, WORKSPACE_DIRECTORY);
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the absolute paths of the interface files
+	 */
+	public List<String> getInterfaceFiles() {
+		return interfaceFiles;
+	}
+
+	public String getDeploymentFile() {
+		return new File(directory, DEPLOYMENT_FILE).getAbsolutePath();
+	}
+
+	public String getCoreDeploymentFile() {
+		return new File(directory, CORE_DEPLOYMENT_FILE).getAbsolutePath();
+	}
+
+	public String getDescription() {
+		return interfaces + " interfaces x " + methods + " methods, struct depth " + depth + ", "
+				+ workspaceModels + " workspace models";
+	}
+
+	public void write() throws IOException {
+		directory.mkdirs();
+		write(TYPES_FILE, createTypes());
+		interfaceFiles.clear();
+		for (int i = 0; i < interfaces; i++) {
+			String fileName = "Interface" + i + ".fidl";
+			write(fileName, createInterface(i));
+			interfaceFiles.add(new File(directory, fileName).getAbsolutePath());
+		}
+		write(CORE_DEPLOYMENT_FILE, createCoreDeployment());
+		write(DEPLOYMENT_FILE, createDeployment());
+		if (workspaceModels > 0) {
+			getWorkspaceDirectory().mkdirs();
+			for (int i = 0; i < workspaceModels; i++) {
+				write(WORKSPACE_DIRECTORY + "/Model" + i + ".fidl", createWorkspaceModel(i));
+			}
+		}
+	}
+
+	/**
+	 * Delete the written files and the directory.
+	 */
+	public void delete() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private String createTypes() {
+		StringBuilder model = new StringBuilder();
+		model.append("package bench.types\n\n");
+		model.append("typeCollection Types {\n");
+		model.append("    version { major 1 minor 0 }\n\n");
+		model.append("    struct Struct0 {\n");
+		model.append("        Int32 value\n");
+		model.append("        String name\n");
+		model.append("    }\n");
+		for (int level = 1; level < depth; level++) {
+			model.append("    struct Struct").append(level).append(" {\n");
+			model.append("        Struct").append(level - 1).append(" inner\n");
+			model.append("        UInt16 count\n");
+			model.append("        String[] names\n");
+			model.append("        Variant choice\n");
+			model.append("    }\n");
+		}
+		model.append("    array StructArray of ").append(getOuterStruct()).append("\n");
+		model.append("    map StructMap { String to ").append(getOuterStruct()).append(" }\n");
+		model.append("    union Variant {\n");
+		model.append("        Int32 number\n");
+		model.append("        String text\n");
+		model.append("    }\n");
+		model.append("    enumeration Kind {\n");
+		model.append("        FIRST\n");
+		model.append("        SECOND\n");
+		model.append("        THIRD\n");
+		model.append("    }\n");
+		model.append("}\n");
+		return model.toString();
+	}
+
+	private String createInterface(int index) {
+		StringBuilder model = new StringBuilder();
+		model.append("package bench.interfaces\n\n");
+		model.append("import bench.types.Types.* from \"").append(TYPES_FILE).append("\"\n\n");
+		model.append("interface Interface").append(index).append(" {\n");
+		model.append("    version { major 1 minor 0 }\n\n");
+		model.append("    attribute ").append(getOuterStruct()).append(" state\n");
+		model.append("    attribute StructMap entries\n\n");
+		for (int i = 0; i < methods; i++) {
+			model.append("    method method").append(i).append(" {\n");
+			model.append("        in {\n");
+			model.append("            ").append(getOuterStruct()).append(" request\n");
+			model.append("            UInt32 id\n");
+			model.append("        }\n");
+			model.append("        out {\n");
+			model.append("            StructArray items\n");
+			model.append("            Variant result\n");
+			model.append("        }\n");
+			model.append("    }\n");
+		}
+		model.append("\n    broadcast changed {\n");
+		model.append("        out {\n");
+		model.append("            Kind kind\n");
+		model.append("            ").append(getOuterStruct()).append(" value\n");
+		model.append("        }\n");
+		model.append("    }\n");
+		model.append("}\n");
+		return model.toString();
+	}
+
+	private String createCoreDeployment() {
+		StringBuilder model = new StringBuilder();
+		model.append("import \"platform:/plugin/org.genivi.commonapi.core/deployment/CommonAPI-4_deployment_spec.fdepl\"\n");
+		model.append("import \"").append(TYPES_FILE).append("\"\n");
+		for (int i = 0; i < interfaces; i++) {
+			model.append("import \"Interface").append(i).append(".fidl\"\n");
+		}
+		model.append("\ndefine org.genivi.commonapi.core.deployment for typeCollection bench.types.Types {\n");
+		model.append("    enumeration Kind {\n");
+		model.append("        EnumBackingType = UInt16\n");
+		model.append("    }\n");
+		model.append("}\n");
+		for (int i = 0; i < interfaces; i++) {
+			model.append("\ndefine org.genivi.commonapi.core.deployment for interface bench.interfaces.Interface")
+					.append(i).append(" {\n");
+			model.append("}\n");
+		}
+		return model.toString();
+	}
+
+	private String createDeployment() {
+		StringBuilder model = new StringBuilder();
+		model.append("import \"platform:/plugin/org.genivi.commonapi.dbus/deployment/CommonAPI-4-DBus_deployment_spec.fdepl\"\n");
+		model.append("import \"").append(CORE_DEPLOYMENT_FILE).append("\"\n");
+		for (int i = 0; i < interfaces; i++) {
+			model.append("import \"Interface").append(i).append(".fidl\"\n");
+		}
+		for (int i = 0; i < interfaces; i++) {
+			model.append("\ndefine org.genivi.commonapi.dbus.deployment for interface bench.interfaces.Interface")
+					.append(i).append(" {\n");
+			model.append("    PropertiesType = CommonAPI\n");
+			if (methods > 0) {
+				model.append("\n    method method0 {\n");
+				model.append("        in {\n");
+				model.append("            id {\n");
+				model.append("                IsUnixFD = false\n");
+				model.append("            }\n");
+				model.append("        }\n");
+				model.append("    }\n");
+			}
+			model.append("}\n");
+		}
+		return model.toString();
+	}
+
+	private String createWorkspaceModel(int index) {
+		StringBuilder model = new StringBuilder();
+		if (index % 100 == 0 && interfaces > 0) {
+			model.append("package bench.interfaces.Interface").append(index % interfaces).append(".nested")
+					.append(index).append("\n\n");
+		} else {
+			model.append("package workspace.group").append(index / 100).append(".model").append(index)
+					.append("\n\n");
+		}
+		model.append("typeCollection Types").append(index).append(" {\n");
+		model.append("    version { major 1 minor 0 }\n");
+		model.append("    typedef Id is UInt32\n");
+		model.append("}\n");
+		return model.toString();
+	}
+
+	private String getOuterStruct() {
+		return "Struct" + (depth - 1);
+	}
+
+	private void write(String fileName, String content) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, fileName)),
+				StandardCharsets.UTF_8)) {
+			writer.write(content);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.CheckMode;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.eclipse.xtext.validation.Issue;
+import org.eclipse.xtext.validation.ValidationMessageAcceptor;
+
+/**
+ * Xtext validation of the input files and their imports for a whole command
+ * line run.
+ *
+ * Without batch validation, each input validates itself and all of its
+ * imports, so a model that is imported by n inputs is validated n times. The
+ * batch validator validates each distinct file once and keeps its issues. The
+ * issues of a file are reported to every input that imports it, directly or
+ * indirectly, in the same way as before.
+ *
+ * The validator is shared by the workers of a parallel run. Each worker
+ * resolves the models in its own resource set; the first worker that needs
+ * the issues of a file validates it, the others wait for its result. Files
+ * that do not depend on each other are validated in parallel.
+ */
+public class BatchValidator {
+
+	private final ConcurrentMap<String, FutureTask<List<Issue>>> issues = new ConcurrentHashMap<String, FutureTask<List<Issue>>>();
+	private final AtomicInteger validated = new AtomicInteger();
+	private final AtomicInteger reused = new AtomicInteger();
+
+	/**
+	 * Report the issues of the given input and of all files it imports to the
+	 * acceptor. Files that were not validated during this run yet are
+	 * validated first.
+	 *
+	 * @param input
+	 *            the loaded resource of an input file
+	 * @param modelCache
+	 *            the cache that holds the resource set of the input
+	 * @param acceptor
+	 *            receives the issues
+	 */
+	public void validateResourceWithImports(Resource input, ModelCache modelCache,
+			ValidationMessageAcceptor acceptor) {
+		EcoreUtil.resolveAll(input);
+		for (Resource resource : modelCache.getResourceClosure(input)) {
+			for (Issue issue : getIssues(resource)) {
+				report(issue, resource, acceptor);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of files that were validated
+	 */
+	public int getValidated() {
+		return validated.get();
+	}
+
+	/**
+	 * @return the number of times the issues of an already validated file
+	 *         were reported again
+	 */
+	public int getReused() {
+		return reused.get();
+	}
+
+	private List<Issue> getIssues(final Resource resource) {
+		FutureTask<List<Issue>> task = new FutureTask<List<Issue>>(new Callable<List<Issue>>() {
+			@Override
+			public List<Issue> call() {
+				return validate(resource);
+			}
+		});
+		FutureTask<List<Issue>> existing = issues.putIfAbsent(ModelCache.key(resource.getURI()), task);
+		if (existing == null) {
+			validated.incrementAndGet();
+			task.run();
+		} else {
+			reused.incrementAndGet();
+			task = existing;
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to validate " + resource.getURI(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Collections.emptyList();
+		}
+	}
+
+	private static List<Issue> validate(Resource resource) {
+		if (!(resource instanceof XtextResource)) {
+			return Collections.emptyList();
+		}
+		IResourceValidator validator = ((XtextResource) resource).getResourceServiceProvider()
+				.getResourceValidator();
+		return validator.validate(resource, CheckMode.ALL, CancelIndicator.NullImpl);
+	}
+
+	private static void report(Issue issue, Resource resource, ValidationMessageAcceptor acceptor) {
+		String message = issue.getMessage();
+		for (String ignored : CommandLineValidatorDBus.IGNORED_MESSAGES) {
+			if (message.contains(ignored)) {
+				return;
+			}
+		}
+		message = resource.getURI().lastSegment() + ":" + issue.getLineNumber() + ": " + message;
+		if (issue.getSeverity() == Severity.ERROR) {
+			acceptor.acceptError(message, null, null, ValidationMessageAcceptor.INSIGNIFICANT_INDEX, issue.getCode());
+		} else if (issue.getSeverity() == Severity.WARNING) {
+			acceptor.acceptWarning(message, null, null, ValidationMessageAcceptor.INSIGNIFICANT_INDEX, issue.getCode());
+		} else {
+			acceptor.acceptInfo(message, null, null, ValidationMessageAcceptor.INSIGNIFICANT_INDEX, issue.getCode());
+		}
+	}
+}
@@ -26,10 +26,19 @@ public class CommandLineHandlerDBus extends AbstractCommandLineHandler implement
     	cliTool = new DBusCommandlineToolMain();
     }
 
+    public CommandLineHandlerDBus(DBusCommandlineToolMain cliTool)
+    {
+    	this.cliTool = cliTool;
+    }
+
     @Override
 	public int excute(CommandLine parsedArguments) {
 		@SuppressWarnings("unchecked")
 		List<String> files = parsedArguments.getArgList();
+		// -srv --server keep running and serve generation requests
+		if (parsedArguments.hasOption("srv")) {
+			return new GeneratorServer().run();
+		}
 		// a search path may be specified, collect all fidl/fdepl files
 		if (parsedArguments.hasOption("sp")) {
 			files.addAll(cliTool.searchFidlandFdeplFiles(parsedArguments
@@ -116,10 +125,65 @@ public class CommandLineHandlerDBus extends AbstractCommandLineHandler implement
 			if (parsedArguments.hasOption("nsc")) {
 				cliTool.disableSyncCalls();
 			}
+			// -sd --static-dispatch dispatch the stub messages by a generated switch
+			if (parsedArguments.hasOption("sd")) {
+				cliTool.setStaticDispatch();
+			}
+			// -ss --subscriber-snapshots send selective broadcasts without locking
+			if (parsedArguments.hasOption("ss")) {
+				cliTool.setSubscriberSnapshots();
+			}
 			// print out generated files
 			if (parsedArguments.hasOption("pf")) {
 				cliTool.listGeneratedFiles();
 			}
+			// Skip models whose inputs did not change since the last run
+			if (parsedArguments.hasOption("inc")) {
+				cliTool.setIncremental();
+			}
+			// Keep generated files whose content did not change
+			if (parsedArguments.hasOption("wic")) {
+				cliTool.setWriteIfChanged();
+			}
+			// Validate shared imports once for all input files
+			if (parsedArguments.hasOption("bv")) {
+				cliTool.setBatchValidation();
+			}
+			// -os --output-store share the generated files in a content-addressed store
+			if (parsedArguments.hasOption("os")) {
+				cliTool.setOutputStore(parsedArguments.getOptionValue("os"));
+			}
+			// -df --depfile write a Make/Ninja dependency file
+			if (parsedArguments.hasOption("df")) {
+				cliTool.setDepFile(parsedArguments.getOptionValue("df"));
+			}
+			// -pl --plan list the files that would be generated
+			// -pj --plan-json write that list to a JSON file
+			if (parsedArguments.hasOption("pj")) {
+				cliTool.setPlan(parsedArguments.getOptionValue("pj"));
+			} else if (parsedArguments.hasOption("pl")) {
+				cliTool.setPlan(null);
+			}
+			// -prof --profile measure the phases of the generation
+			if (parsedArguments.hasOption("prof")) {
+				cliTool.setProfile(parsedArguments.getOptionValue("prof"));
+			}
+			// -sh --shard generate only the part i of n
+			if (parsedArguments.hasOption("sh")) {
+				if (!cliTool.setShard(parsedArguments.getOptionValue("sh"))) {
+					return 1;
+				}
+			}
+			// -j --jobs generate the files with the given number of threads
+			if (parsedArguments.hasOption("j")) {
+				if (!cliTool.setJobs(parsedArguments.getOptionValue("j"))) {
+					return 1;
+				}
+			}
+			// -w --watch regenerate the files whenever a model changes
+			if (parsedArguments.hasOption("w")) {
+				return cliTool.watchDBus(files, parsedArguments.getOptionValue("sp"));
+			}
 			// finally invoke the generator.
 			return cliTool.generateDBus(files);
 		} else {
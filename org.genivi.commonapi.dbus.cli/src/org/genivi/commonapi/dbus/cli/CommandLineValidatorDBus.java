@@ -4,6 +4,7 @@
    file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.genivi.commonapi.dbus.cli;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.emf.common.util.BasicDiagnostic;
@@ -16,6 +17,16 @@ import org.genivi.commonapi.core.verification.DeploymentValidator;
 
 public class CommandLineValidatorDBus extends CommandlineValidator{
 
+    /**
+     * Messages caused by deployments for other bindings, which are not
+     * available to the D-Bus generator
+     */
+    public static final List<String> IGNORED_MESSAGES = Arrays.asList(
+        "Unable to resolve plug-in \"platform:/plugin/org.genivi.commonapi.someip/deployment/CommonAPI-SOMEIP_deployment_spec.fdepl\"",
+        "Unable to resolve plug-in \"platform:/plugin/org.genivi.commonapi.someip/deployment/CommonAPI-4-SOMEIP_deployment_spec.fdepl\"",
+        "Couldn't resolve reference to FDSpecification 'org.genivi.commonapi.someip.deployment'",
+        "Couldn't resolve reference to FDPropertyDecl");
+
 	public CommandLineValidatorDBus(ValidationMessageAcceptor cliMessageAcceptor)
     {
         super(cliMessageAcceptor);
@@ -23,10 +34,9 @@ public class CommandLineValidatorDBus extends CommandlineValidator{
     @Override
     public boolean validateDeployment(URI resourcePathUri)
     {
-        addIgnoreString("Unable to resolve plug-in \"platform:/plugin/org.genivi.commonapi.someip/deployment/CommonAPI-SOMEIP_deployment_spec.fdepl\"");
-        addIgnoreString("Unable to resolve plug-in \"platform:/plugin/org.genivi.commonapi.someip/deployment/CommonAPI-4-SOMEIP_deployment_spec.fdepl\"");
-        addIgnoreString("Couldn't resolve reference to FDSpecification 'org.genivi.commonapi.someip.deployment'");
-        addIgnoreString("Couldn't resolve reference to FDPropertyDecl");
+        for (String ignored : IGNORED_MESSAGES) {
+            addIgnoreString(ignored);
+        }
         return super.validateDeployment(resourcePathUri);
     }
 
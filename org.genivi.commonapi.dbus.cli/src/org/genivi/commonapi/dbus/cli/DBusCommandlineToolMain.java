@@ -5,20 +5,28 @@
 package org.genivi.commonapi.dbus.cli;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.xtext.generator.IGenerator;
 import org.eclipse.xtext.resource.XtextResourceSet;
 import org.eclipse.xtext.validation.AbstractValidationMessageAcceptor;
-import org.eclipse.xtext.validation.ValidationMessageAcceptor;
 import org.franca.core.dsl.FrancaIDLRuntimeModule;
 import org.franca.core.franca.FModel;
+import org.franca.core.franca.FTypeCollection;
 import org.franca.deploymodel.dsl.fDeploy.FDModel;
 import org.genivi.commonapi.console.CommandlineTool;
 import org.genivi.commonapi.console.ConsoleLogger;
@@ -26,7 +34,15 @@ import org.genivi.commonapi.core.generator.GeneratorFileSystemAccess;
 import org.genivi.commonapi.core.verification.CommandlineValidator;
 import org.genivi.commonapi.core.verification.ValidateElements;
 import org.genivi.commonapi.core.verification.ValidatorCore;
+import org.genivi.commonapi.dbus.deployment.PropertyAccessor;
 import org.genivi.commonapi.dbus.generator.FrancaDBusGenerator;
+import org.genivi.commonapi.dbus.generator.GeneratedUnits;
+import org.genivi.commonapi.dbus.generator.GenerationProfile;
+import org.genivi.commonapi.dbus.generator.GenerationProfile.Measurement;
+import org.genivi.commonapi.dbus.generator.OutputStore;
+import org.genivi.commonapi.dbus.generator.PlanningFileSystemAccess;
+import org.genivi.commonapi.dbus.generator.ShardAssignment;
+import org.genivi.commonapi.dbus.generator.WriteIfChangedFileSystemAccess;
 import org.genivi.commonapi.dbus.preferences.FPreferencesDBus;
 import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus;
 
@@ -43,39 +59,93 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 	protected Injector injector;
 	protected IGenerator francaGenerator;
 	protected String SCOPE = "DBus validation: ";
+	protected static final int PROFILE_SUMMARY_SIZE = 10;
 	private ValidateElements validateElements = new ValidateElements();
 
-	private ValidationMessageAcceptor cliMessageAcceptor = new AbstractValidationMessageAcceptor() {
+	protected int jobs = 1;
+	protected boolean verbose = false;
+	protected boolean writeIfChanged = false;
+	protected ModelCache sharedModelCache = null;
+	protected boolean batchValidation = false;
+	protected BatchValidator batchValidator = null;
+	protected GeneratedUnits generatedUnits = null;
+	protected String depFileName = null;
+	protected DepFile depFile = null;
+	protected boolean plan = false;
+	protected String planFileName = null;
+	protected GenerationPlan generationPlan = null;
+	protected int shard = 0;
+	protected int shardCount = 0;
+	protected String profileFileName = null;
+
+	/**
+	 * Message acceptor that reports validation messages to the log of the
+	 * file being validated and remembers whether an error occurred.
+	 */
+	private class CliMessageAcceptor extends AbstractValidationMessageAcceptor {
+		private final GenerationLog log;
+		private boolean hasError = false;
+
+		CliMessageAcceptor(GenerationLog log) {
+			this.log = log;
+		}
 
 		@Override
 		public void acceptInfo(String message, EObject object,
 				EStructuralFeature feature, int index, String code,
 				String... issueData) {
-			ConsoleLogger.printLog(SCOPE + message);
+			log.printLog(SCOPE + message);
 		}
 
 		@Override
 		public void acceptWarning(String message, EObject object,
 				EStructuralFeature feature, int index, String code,
 				String... issueData) {
-			ConsoleLogger.printLog("Warning: " + SCOPE + message);
+			log.printLog("Warning: " + SCOPE + message);
 		}
 
 		@Override
 		public void acceptError(String message, EObject object,
 				EStructuralFeature feature, int index, String code,
 				String... issueData) {
-			hasValidationError = true;
-			ConsoleLogger.printErrorLog("Error: " + SCOPE + message);
+			hasError = true;
+			log.printErrorLog("Error: " + SCOPE + message);
+		}
+	}
+
+	/**
+	 * The per thread state used by parallel generation. Each worker owns its
+	 * injector, resource set, generator and file system access.
+	 */
+	private static class GenerationWorker {
+		final ModelCache modelCache;
+		final GeneratorFileSystemAccess fsa;
+		final WriteIfChangedFileSystemAccess output;
+		final IGenerator generator;
+
+		GenerationWorker(Injector injector) {
+			modelCache = new ModelCache(injector.getProvider(XtextResourceSet.class).get());
+			fsa = injector.getInstance(GeneratorFileSystemAccess.class);
+			fsa.setOutputConfigurations(FPreferencesDBus.getInstance()
+					.getOutputpathConfiguration());
+			output = new WriteIfChangedFileSystemAccess(fsa);
+			generator = injector.getInstance(FrancaDBusGenerator.class);
 		}
-	};
+	}
 
 	/**
 	 * The constructor registers the needed bindings to use the generator
 	 */
 	public DBusCommandlineToolMain() {
+		this(Guice.createInjector(new FrancaIDLRuntimeModule()));
+	}
+
+	/**
+	 * Use the bindings of an existing injector (see GeneratorServer)
+	 */
+	public DBusCommandlineToolMain(Injector injector) {
 
-		injector = Guice.createInjector(new FrancaIDLRuntimeModule());
+		this.injector = injector;
 
 		fsa = injector.getInstance(GeneratorFileSystemAccess.class);
 
@@ -89,6 +159,47 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 		return doGenerate(fileList);
 	}
 
+	/**
+	 * Generate the files and keep running to regenerate them whenever they or
+	 * the models they import change (see GenerationWatcher)
+	 *
+	 * @param fileList
+	 *            the input files
+	 * @param searchPath
+	 *            the search path the input files were collected from, or null
+	 */
+	public int watchDBus(List<String> fileList, String searchPath) {
+		if (plan) {
+			ConsoleLogger.printErrorLog("Watch mode cannot be combined with a plan");
+			return generateDBus(fileList);
+		}
+		// Unchanged models are kept in a single resource set between the runs
+		if (jobs > 1) {
+			ConsoleLogger.printLog("Watch mode generates with a single job");
+			jobs = 1;
+		}
+		if (sharedModelCache == null) {
+			sharedModelCache = new ModelCache(injector.getProvider(
+					XtextResourceSet.class).get());
+		}
+		List<String> inputs = new ArrayList<String>();
+		for (String path : fileList) {
+			inputs.add(normalize(path));
+		}
+		generateDBus(inputs);
+		// The dependency file only describes complete runs
+		depFileName = null;
+		try {
+			new GenerationWatcher(this, sharedModelCache, inputs, searchPath).run();
+		} catch (IOException e) {
+			ConsoleLogger.printErrorLog("Failed to watch the input files: " + e.getMessage());
+			return ERROR_STATE;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return NO_ERROR_STATE;
+	}
+
 	protected String normalize(String _path) {
 		File itsFile = new File(_path);
 		return itsFile.getAbsolutePath();
@@ -101,12 +212,6 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 	 *            the list of files to generate code from
 	 */
 	protected int doGenerate(List<String> _fileList) {
-		fsa.setOutputConfigurations(FPreferencesDBus.getInstance()
-				.getOutputpathConfiguration());
-
-		XtextResourceSet rsset = injector.getProvider(XtextResourceSet.class)
-				.get();
-
 		int error_state = NO_ERROR_STATE;
 		ConsoleLogger.printLog("Using Franca Version " + getFrancaVersion());
 
@@ -117,105 +222,453 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 			fileList.add(absolutePath);
 		}
 
-		for (String file : fileList) {
-			URI uri = URI.createFileURI(file);
-			Resource resource = null;
-			try {
-				resource = rsset.createResource(uri);
-			} catch (IllegalStateException ise) {
-				ConsoleLogger.printErrorLog("Failed to create a resource from "
-						+ file + "\n" + ise.getMessage());
-				error_state = ERROR_STATE;
-				continue;
-			}
-			hasValidationError = false;
-			if (isValidation) {
-				validateDBus(resource);
+		PropertyAccessor.resetStatistics();
+		batchValidator = (isValidation && batchValidation) ? new BatchValidator() : null;
+		generatedUnits = new GeneratedUnits();
+		depFile = (depFileName != null) ? new DepFile(fileList) : null;
+		if (shardCount > 0) {
+			ShardAssignment assignment = createShardAssignment(fileList);
+			generatedUnits.setShard(assignment);
+			ConsoleLogger.printLog("Shard " + shard + "/" + shardCount + ": "
+					+ assignment.getElements() + " of "
+					+ assignment.getTotalElements()
+					+ " interfaces and type collections, weight "
+					+ assignment.getWeight() + " of "
+					+ assignment.getTotalWeight());
+		}
+		if (plan) {
+			// The generators only emit the names of the files
+			dbusPref.setPreference(PreferenceConstantsDBus.P_GENERATE_CODE_DBUS, "false");
+			dbusPref.setPreference(PreferenceConstantsDBus.P_GENERATE_INCREMENTAL_DBUS, "false");
+			dbusPref.setPreference(PreferenceConstantsDBus.P_OUTPUT_STORE_DBUS, "");
+			generationPlan = new GenerationPlan(fileList);
+		}
+		OutputStore outputStore = getOutputStore();
+		if (outputStore != null) {
+			outputStore.resetStatistics();
+		}
+		GenerationProfile profile = null;
+		if (profileFileName != null) {
+			profile = new GenerationProfile();
+			GenerationProfile.setCurrent(profile);
+		}
+		if (jobs > 1 && fileList.size() > 1) {
+			error_state = doGenerateParallel(fileList);
+		} else {
+			error_state = doGenerateSequential(fileList);
+		}
+		if (verbose) {
+			ConsoleLogger.printLog("Deployment lookups: "
+					+ PropertyAccessor.getLookupCount() + ", resolved: "
+					+ PropertyAccessor.getResolutionCount());
+			if (batchValidator != null) {
+				ConsoleLogger.printLog("Batch validation: "
+						+ batchValidator.getValidated() + " files validated, "
+						+ batchValidator.getReused() + " reused");
 			}
-			if (!hasValidationError) {
-				ConsoleLogger.printLog("Generating code for " + file);
+		}
+		printUnitStatistics(generatedUnits);
+		if (outputStore != null) {
+			ConsoleLogger.printLog("Output store: " + outputStore.getRestored()
+					+ " restored, " + outputStore.getStored() + " stored");
+		}
+		if (generationPlan != null) {
+			if (planFileName != null) {
 				try {
-					if (FPreferencesDBus.getInstance().getPreference(
-							PreferenceConstantsDBus.P_OUTPUT_SUBDIRS_DBUS, "false").equals("true")) {
-						String subdir = (new File(file)).getName();
-						subdir = subdir.replace(".fidl", "");
-						subdir = subdir.replace(".fdepl", "");
-						fsa.setOutputConfigurations(FPreferencesDBus.getInstance()
-							.getOutputpathConfiguration(subdir));
-					}
-					francaGenerator.doGenerate(resource, fsa);
-				} catch (Exception e) {
-					ConsoleLogger
-							.printErrorLog("Failed to generate dbus code: "
-									+ e.getMessage());
+					generationPlan.writeJson(planFileName);
+				} catch (IOException e) {
+					ConsoleLogger.printErrorLog("Failed to write the plan "
+							+ planFileName + ": " + e.getMessage());
 					error_state = ERROR_STATE;
 				}
 			} else {
+				generationPlan.print();
+			}
+			generationPlan = null;
+		}
+		if (profile != null) {
+			GenerationProfile.setCurrent(null);
+			for (String line : profile.getSummary(PROFILE_SUMMARY_SIZE)) {
+				ConsoleLogger.printLog(line);
+			}
+			try {
+				profile.writeJson(profileFileName);
+			} catch (IOException e) {
+				ConsoleLogger.printErrorLog("Failed to write the profile "
+						+ profileFileName + ": " + e.getMessage());
 				error_state = ERROR_STATE;
 			}
-			if (resource != null) {
-				// Clear each resource from the resource set in order to let
-				// other fidl files import it.
-				// Otherwise an IllegalStateException will be thrown for a
-				// resource that was already created.
-				resource.unload();
-				rsset.getResources().clear();
+		}
+		if (depFile != null) {
+			try {
+				depFile.write(depFileName);
+			} catch (IOException e) {
+				ConsoleLogger.printErrorLog("Failed to write the dependency file "
+						+ depFileName + ": " + e.getMessage());
+				error_state = ERROR_STATE;
 			}
+			depFile = null;
+		}
+		batchValidator = null;
+		generatedUnits = null;
+		dumpGeneratedFiles = false;
+		return error_state;
+	}
+
+	/**
+	 * Load the input files and distribute the interfaces and type collections
+	 * of all models they read over the shards.
+	 */
+	protected ShardAssignment createShardAssignment(List<String> fileList) {
+		ModelCache modelCache = new ModelCache(injector.getProvider(
+				XtextResourceSet.class).get());
+		for (String file : fileList) {
+			try {
+				Resource resource = modelCache.getResource(URI.createFileURI(file));
+				if (!resource.isLoaded()) {
+					resource.load(modelCache.getResourceSet().getLoadOptions());
+				}
+			} catch (IOException | RuntimeException e) {
+				// reported when the file is generated
+			}
+		}
+		EcoreUtil.resolveAll(modelCache.getResourceSet());
+		List<FTypeCollection> elements = new ArrayList<FTypeCollection>();
+		for (Resource resource : modelCache.getResourceSet().getResources()) {
+			for (EObject model : resource.getContents()) {
+				if (model instanceof FModel) {
+					elements.addAll(((FModel) model).getTypeCollections());
+					elements.addAll(((FModel) model).getInterfaces());
+				}
+			}
+		}
+		ShardAssignment assignment = new ShardAssignment(shard, shardCount, elements);
+		modelCache.clear();
+		return assignment;
+	}
+
+	/**
+	 * Generate the files one after the other on a single resource set.
+	 */
+	protected int doGenerateSequential(List<String> fileList) {
+		fsa.setOutputConfigurations(FPreferencesDBus.getInstance()
+				.getOutputpathConfiguration());
+
+		ModelCache modelCache = sharedModelCache;
+		if (modelCache == null) {
+			modelCache = new ModelCache(injector.getProvider(
+					XtextResourceSet.class).get());
+		}
+		GenerationLog log = new GenerationLog(false);
+		WriteIfChangedFileSystemAccess output = new WriteIfChangedFileSystemAccess(fsa);
+
+		int error_state = NO_ERROR_STATE;
+		for (String file : fileList) {
+			if (generateFile(file, modelCache, francaGenerator, fsa, output, log) != NO_ERROR_STATE) {
+				error_state = ERROR_STATE;
+			}
+		}
+		printCacheStatistics(modelCache.getHits(), modelCache.getMisses());
+		if (modelCache != sharedModelCache) {
+			modelCache.clear();
 		}
 		if (dumpGeneratedFiles) {
 			fsa.dumpGeneratedFiles();
+			dumpUnchangedFiles(output.getUnchangedFiles());
 		}
 		fsa.clearFileList();
-		dumpGeneratedFiles = false;
+		printWriteStatistics(output.getWritten(), output.getSkipped());
 		return error_state;
 	}
 
+	/**
+	 * Generate the files on a pool of worker threads. The console output of
+	 * each file is buffered and printed in input order.
+	 */
+	protected int doGenerateParallel(List<String> fileList) {
+		final List<GenerationWorker> workers = Collections
+				.synchronizedList(new ArrayList<GenerationWorker>());
+		final ThreadLocal<GenerationWorker> currentWorker = new ThreadLocal<GenerationWorker>() {
+			@Override
+			protected GenerationWorker initialValue() {
+				GenerationWorker worker = new GenerationWorker(
+						Guice.createInjector(new FrancaIDLRuntimeModule()));
+				workers.add(worker);
+				return worker;
+			}
+		};
+
+		ConsoleLogger.printLog("Generating with " + jobs + " parallel jobs");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs,
+				fileList.size()));
+		List<GenerationLog> logs = new ArrayList<GenerationLog>();
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (final String file : fileList) {
+			final GenerationLog log = new GenerationLog(true);
+			logs.add(log);
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					GenerationWorker worker = currentWorker.get();
+					return generateFile(file, worker.modelCache,
+							worker.generator, worker.fsa, worker.output, log);
+				}
+			}));
+		}
+
+		int error_state = NO_ERROR_STATE;
+		try {
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					if (results.get(i).get() != NO_ERROR_STATE) {
+						error_state = ERROR_STATE;
+					}
+				} catch (ExecutionException e) {
+					logs.get(i).printErrorLog("Failed to generate dbus code: "
+							+ e.getCause().getMessage());
+					error_state = ERROR_STATE;
+				}
+				logs.get(i).flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			error_state = ERROR_STATE;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		synchronized (workers) {
+			int hits = 0;
+			int misses = 0;
+			int written = 0;
+			int skipped = 0;
+			for (GenerationWorker worker : workers) {
+				if (dumpGeneratedFiles) {
+					worker.fsa.dumpGeneratedFiles();
+					dumpUnchangedFiles(worker.output.getUnchangedFiles());
+				}
+				worker.fsa.clearFileList();
+				hits += worker.modelCache.getHits();
+				misses += worker.modelCache.getMisses();
+				worker.modelCache.clear();
+				written += worker.output.getWritten();
+				skipped += worker.output.getSkipped();
+			}
+			printCacheStatistics(hits, misses);
+			printWriteStatistics(written, skipped);
+		}
+		return error_state;
+	}
+
+	/**
+	 * Validate and generate a single file.
+	 *
+	 * @return NO_ERROR_STATE or ERROR_STATE
+	 */
+	protected int generateFile(String file, ModelCache modelCache,
+			IGenerator generator, GeneratorFileSystemAccess fileSystemAccess,
+			WriteIfChangedFileSystemAccess output, GenerationLog log) {
+		int error_state = NO_ERROR_STATE;
+		URI uri = URI.createFileURI(file);
+		Resource resource = null;
+		try (Measurement measurement = GenerationProfile.start("resource.create", file)) {
+			resource = modelCache.getResource(uri);
+		} catch (IllegalStateException ise) {
+			log.printErrorLog("Failed to create a resource from "
+					+ file + "\n" + ise.getMessage());
+			return ERROR_STATE;
+		}
+		boolean hasError = false;
+		if (isValidation) {
+			hasError = validateDBus(resource, modelCache, log);
+		}
+		if (!hasError) {
+			log.printLog((generationPlan != null ? "Planning code for " : "Generating code for ") + file);
+			try {
+				// Units of code that were already generated for another input
+				// file of this run are not generated again. Inputs that are
+				// generated into separate subdirectories do not share units.
+				String scope = "";
+				if (FPreferencesDBus.getInstance().getPreference(
+						PreferenceConstantsDBus.P_OUTPUT_SUBDIRS_DBUS, "false").equals("true")) {
+					String subdir = (new File(file)).getName();
+					subdir = subdir.replace(".fidl", "");
+					subdir = subdir.replace(".fdepl", "");
+					fileSystemAccess.setOutputConfigurations(FPreferencesDBus.getInstance()
+						.getOutputpathConfiguration(subdir));
+					scope = subdir;
+				}
+				if (generator instanceof FrancaDBusGenerator) {
+					((FrancaDBusGenerator) generator).setGeneratedUnits(generatedUnits, scope);
+					// Take the imports from the model cache instead of loading
+					// them again for each input file
+					((FrancaDBusGenerator) generator).setReuseLoadedModels(true);
+				}
+				try (Measurement measurement = GenerationProfile.start("generate", file)) {
+					if (generationPlan != null) {
+						generator.doGenerate(resource, new PlanningFileSystemAccess(fileSystemAccess));
+						if (generator instanceof FrancaDBusGenerator) {
+							generationPlan.add(file, ((FrancaDBusGenerator) generator).getGeneratedFiles());
+						}
+					} else if (writeIfChanged) {
+						generator.doGenerate(resource, output);
+					} else {
+						generator.doGenerate(resource, fileSystemAccess);
+					}
+				}
+				if (depFile != null && generator instanceof FrancaDBusGenerator) {
+					depFile.add(file, ((FrancaDBusGenerator) generator).getGeneratedFiles(),
+							((FrancaDBusGenerator) generator).getGeneratedInputs());
+				}
+			} catch (Exception e) {
+				log.printErrorLog("Failed to generate dbus code: "
+								+ e.getMessage());
+				error_state = ERROR_STATE;
+			}
+		} else {
+			error_state = ERROR_STATE;
+		}
+		// Keep the loaded models for the following files. A file that was
+		// already loaded as an import is taken from the cache instead of
+		// creating its resource a second time.
+		modelCache.update(resource);
+		return error_state;
+	}
+
+	protected void printWriteStatistics(int written, int skipped) {
+		if (writeIfChanged) {
+			ConsoleLogger.printLog("Generated files: " + written + " written, "
+					+ skipped + " unchanged");
+		}
+	}
+
+	protected void printUnitStatistics(GeneratedUnits units) {
+		if (units.getRendered() > 0 || units.getDeduplicated() > 0) {
+			ConsoleLogger.printLog("Generated units: " + units.getRendered()
+					+ " rendered, " + units.getDeduplicated() + " deduplicated");
+		}
+	}
+
+	/**
+	 * @return the output store set by preference, or null
+	 */
+	protected OutputStore getOutputStore() {
+		String directory = dbusPref.getPreference(PreferenceConstantsDBus.P_OUTPUT_STORE_DBUS, "");
+		return directory.isEmpty() ? null : OutputStore.getInstance(directory);
+	}
+
+	protected void dumpUnchangedFiles(List<String> unchangedFiles) {
+		for (String file : unchangedFiles) {
+			ConsoleLogger.printLog("Unchanged: " + file);
+		}
+	}
+
+	protected void printCacheStatistics(int hits, int misses) {
+		if (verbose) {
+			ConsoleLogger.printLog("Model cache: " + hits + " hits, " + misses
+					+ " misses");
+		}
+	}
+
 	/**
 	 * Validate the fidl/fdepl file resource
 	 *
 	 * @param resource
 	 */
 	public void validateDBus(Resource resource) {
+		hasValidationError = validateDBus(resource, new GenerationLog(false));
+	}
+
+	/**
+	 * Validate the fidl/fdepl file resource and report the messages to the
+	 * given log.
+	 *
+	 * @param resource
+	 * @param log
+	 * @return true if a validation error was found
+	 */
+	protected boolean validateDBus(Resource resource, GenerationLog log) {
+		return validateDBus(resource, null, log);
+	}
+
+	/**
+	 * Validate the fidl/fdepl file resource and report the messages to the
+	 * given log. In batch validation mode, the Xtext validation of the
+	 * resource and its imports is shared by all inputs of the run (see
+	 * BatchValidator).
+	 *
+	 * @param resource
+	 * @param modelCache
+	 *            the cache that holds the resource set of the resource
+	 * @param log
+	 * @return true if a validation error was found
+	 */
+	protected boolean validateDBus(Resource resource, ModelCache modelCache, GenerationLog log) {
 		EObject model = null;
+		CliMessageAcceptor cliMessageAcceptor = new CliMessageAcceptor(log);
 		CommandLineValidatorDBus cliValidator = new CommandLineValidatorDBus(
 				cliMessageAcceptor);
 
 		//ConsoleLogger.printLog("validating " + resource.getURI().lastSegment());
 
-		model = cliValidator.loadResource(resource);
+		String file = resource.getURI().toString();
+		try (Measurement measurement = GenerationProfile.start("resource.load", file)) {
+			model = cliValidator.loadResource(resource);
+		}
 
 		if (model != null) {
 			if (model instanceof FDModel) {
-				validateElements.verifyEqualInOutAndAddSuffix((FDModel) model);
+				try (Measurement measurement = GenerationProfile.start("validate.suffix", file)) {
+					validateElements.verifyEqualInOutAndAddSuffix((FDModel) model);
+				}
 
 				// check existence of imported fidl/fdepl files
-				cliValidator.validateImports((FDModel) model, resource.getURI());
+				try (Measurement measurement = GenerationProfile.start("validate.imports", file)) {
+					cliValidator.validateImports((FDModel) model, resource.getURI());
+				}
 
 				// perform DBus specific deployment validation
-				cliValidator.validateDeployment(resource.getURI());
+				try (Measurement measurement = GenerationProfile.start("validate.deployment", file)) {
+					cliValidator.validateDeployment(resource.getURI());
+				}
 			}
 			// check existence of imported fidl/fdepl files
 			if (model instanceof FModel) {
-				validateElements.verifyEqualInOutAndAddSuffix((FModel) model);
+				try (Measurement measurement = GenerationProfile.start("validate.suffix", file)) {
+					validateElements.verifyEqualInOutAndAddSuffix((FModel) model);
+				}
 
-				cliValidator.validateImports((FModel) model, resource.getURI());
+				try (Measurement measurement = GenerationProfile.start("validate.imports", file)) {
+					cliValidator.validateImports((FModel) model, resource.getURI());
+				}
 
 				// validate against GENIVI rules
 				ValidatorCore validator = new ValidatorCore();
-				try {
+				try (Measurement measurement = GenerationProfile.start("validate.core", file)) {
 					validator.validateModel((FModel) model, cliMessageAcceptor);
 				} catch (Exception e) {
-					ConsoleLogger.printErrorLog(e.getMessage());
-					hasValidationError = true;
-					return;
+					log.printErrorLog(e.getMessage());
+					return true;
 				}
 			}
 			// XText validation
-			cliValidator.validateResourceWithImports(resource);
+			try (Measurement measurement = GenerationProfile.start("validate.xtext", file)) {
+				if (batchValidator != null && modelCache != null) {
+					try {
+						batchValidator.validateResourceWithImports(resource, modelCache, cliMessageAcceptor);
+					} catch (IllegalStateException e) {
+						log.printErrorLog(e.getMessage());
+						return true;
+					}
+				} else {
+					cliValidator.validateResourceWithImports(resource);
+				}
+			}
 		} else {
 			// model is null, no resource factory was registered !
-			hasValidationError = true;
+			return true;
 		}
+		return cliMessageAcceptor.hasError;
 	}
 
 	public void setNoCommonCode() {
@@ -284,6 +737,7 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 		if (PreferenceConstantsDBus.LOGLEVEL_VERBOSE.equals(optionValue)) {
 			dbusPref.setPreference(PreferenceConstantsDBus.P_LOGOUTPUT_DBUS,
 					"true");
+			verbose = true;
 			ConsoleLogger.enableErrorLogging(true);
 			ConsoleLogger.enableLogging(true);
 		}
@@ -319,6 +773,26 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 				PreferenceConstantsDBus.P_GENERATE_SYNC_CALLS_DBUS, "false");
 	}
 
+	/**
+	 * Generate stub adapters that dispatch the messages of their own members
+	 * by a switch on the member name instead of the dispatcher table
+	 */
+	public void setStaticDispatch() {
+		ConsoleLogger.printLog("Stub adapters dispatch by a generated switch");
+		dbusPref.setPreference(
+				PreferenceConstantsDBus.P_GENERATE_STATIC_DISPATCH_DBUS, "true");
+	}
+
+	/**
+	 * Generate stub adapters that keep the subscribers of selective
+	 * broadcasts in copy-on-write snapshots
+	 */
+	public void setSubscriberSnapshots() {
+		ConsoleLogger.printLog("Selective broadcasts use subscriber snapshots");
+		dbusPref.setPreference(
+				PreferenceConstantsDBus.P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS, "true");
+	}
+
 	/**
 	 * Set the text from a file which will be inserted as a comment in each
 	 * generated file (for example your license)
@@ -345,4 +819,141 @@ public class DBusCommandlineToolMain extends CommandlineTool {
 		dumpGeneratedFiles = true;
 	}
 
+	/**
+	 * Set a preference value to skip the generation of models that did not
+	 * change since the last run (see GenerationManifest)
+	 */
+	public void setIncremental() {
+		ConsoleLogger.printLog("Incremental generation is on");
+		dbusPref.setPreference(
+				PreferenceConstantsDBus.P_GENERATE_INCREMENTAL_DBUS, "true");
+	}
+
+	/**
+	 * Only write generated files whose content differs from the existing file
+	 */
+	public void setWriteIfChanged() {
+		ConsoleLogger.printLog("Unchanged files will not be written");
+		writeIfChanged = true;
+	}
+
+	/**
+	 * Keep the loaded models in the given cache after the generation instead
+	 * of dropping them (see GeneratorServer)
+	 */
+	public void setSharedModelCache(ModelCache modelCache) {
+		sharedModelCache = modelCache;
+	}
+
+	/**
+	 * List the files that the generation would produce instead of generating
+	 * them. The models are not validated.
+	 *
+	 * @param optionValue
+	 *            the name of a JSON file to write the list to, or null to
+	 *            print the list
+	 */
+	public void setPlan(String optionValue) {
+		ConsoleLogger.printLog("Plan mode: no code will be generated");
+		plan = true;
+		planFileName = optionValue;
+		isValidation = false;
+	}
+
+	/**
+	 * Generate only the part of the code that is assigned to one of several
+	 * shards (see ShardAssignment)
+	 *
+	 * @param optionValue
+	 *            the shard and the number of shards, e.g. 2/8
+	 * @return false if the value is not a valid shard
+	 */
+	public boolean setShard(String optionValue) {
+		String[] parts = optionValue.split("/");
+		try {
+			if (parts.length == 2) {
+				int itsShard = Integer.parseInt(parts[0].trim());
+				int itsCount = Integer.parseInt(parts[1].trim());
+				if (itsCount >= 1 && itsShard >= 1 && itsShard <= itsCount) {
+					shard = itsShard;
+					shardCount = itsCount;
+					ConsoleLogger.printLog("Generating shard " + shard + " of " + shardCount);
+					return true;
+				}
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		ConsoleLogger.printErrorLog("Invalid shard: " + optionValue + " (expected i/n with 1 <= i <= n)");
+		return false;
+	}
+
+	/**
+	 * Restore the generated files from a content-addressed store shared by
+	 * several checkouts or machines, and add new generations to it (see
+	 * OutputStore)
+	 *
+	 * @param optionValue
+	 *            the directory of the store
+	 */
+	public void setOutputStore(String optionValue) {
+		ConsoleLogger.printLog("Output store: " + optionValue);
+		dbusPref.setPreference(PreferenceConstantsDBus.P_OUTPUT_STORE_DBUS,
+				new File(optionValue).getAbsolutePath());
+	}
+
+	/**
+	 * Measure the phases of the generation and write the results to a JSON
+	 * file (see GenerationProfile)
+	 *
+	 * @param optionValue
+	 *            the name of the JSON file
+	 */
+	public void setProfile(String optionValue) {
+		ConsoleLogger.printLog("Profile: " + optionValue);
+		profileFileName = optionValue;
+	}
+
+	/**
+	 * Write a Make/Ninja dependency file that lists the generated files and
+	 * the models read for each input file (see DepFile)
+	 *
+	 * @param optionValue
+	 *            the name of the dependency file
+	 */
+	public void setDepFile(String optionValue) {
+		ConsoleLogger.printLog("Dependency file: " + optionValue);
+		depFileName = optionValue;
+	}
+
+	/**
+	 * Validate each model once per run, even if it is imported by several
+	 * input files
+	 */
+	public void setBatchValidation() {
+		ConsoleLogger.printLog("Batch validation is on");
+		batchValidation = true;
+	}
+
+	/**
+	 * Set the number of files that are generated in parallel
+	 *
+	 * @param optionValue
+	 * @return false if the value is not a positive number
+	 */
+	public boolean setJobs(String optionValue) {
+		try {
+			int itsJobs = Integer.parseInt(optionValue.trim());
+			if (itsJobs >= 1) {
+				jobs = itsJobs;
+				ConsoleLogger.printLog("Number of parallel jobs: " + jobs);
+				return true;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		ConsoleLogger.printErrorLog("Invalid number of jobs: " + optionValue + " (expected a positive number)");
+		return false;
+	}
+
 }
@@ -0,0 +1,118 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dependency file in the format of Make, which is understood by Ninja and
+ * CMake (DEPFILE) as well.
+ *
+ * For each input file there is one rule. Its targets are all files that were
+ * generated for the input, its prerequisites are the input and all models and
+ * deployments it imports, directly or indirectly:
+ *
+ * <pre>
+ * src-gen/v1/a/ProxyA.hpp src-gen/v1/a/StubAdapterA.hpp: a.fidl types.fidl
+ * </pre>
+ *
+ * Rules are written in the order of the input files, no matter in which order
+ * the inputs were generated.
+ */
+public class DepFile {
+
+	private final List<String> inputs;
+	private final Map<String, String> rules = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * @param inputs
+	 *            the input files of the run in their order
+	 */
+	public DepFile(List<String> inputs) {
+		this.inputs = new ArrayList<String>(inputs);
+	}
+
+	/**
+	 * Add the rule of an input. Inputs that did not generate any file do not
+	 * get a rule.
+	 *
+	 * @param input
+	 *            the input file
+	 * @param outputs
+	 *            the absolute paths of the generated files
+	 * @param dependencies
+	 *            the absolute paths of the files that were read
+	 */
+	public void add(String input, Collection<String> outputs, Collection<String> dependencies) {
+		if (outputs.isEmpty()) {
+			return;
+		}
+		StringBuilder rule = new StringBuilder();
+		for (String output : outputs) {
+			if (rule.length() > 0) {
+				rule.append(" \\\n ");
+			}
+			rule.append(escape(output));
+		}
+		rule.append(":");
+		Set<String> prerequisites = new LinkedHashSet<String>();
+		prerequisites.add(input);
+		prerequisites.addAll(dependencies);
+		for (String prerequisite : prerequisites) {
+			rule.append(" \\\n ").append(escape(prerequisite));
+		}
+		rules.put(input, rule.toString());
+	}
+
+	/**
+	 * Write the rules to the given file, replacing its content.
+	 */
+	public void write(String fileName) throws IOException {
+		File file = new File(fileName);
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists()) {
+			directory.mkdirs();
+		}
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			for (String input : inputs) {
+				String rule = rules.get(input);
+				if (rule != null) {
+					writer.write(rule);
+					writer.write("\n");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Escape the characters that are special in Make and Ninja dependency
+	 * files.
+	 */
+	static String escape(String path) {
+		StringBuilder escaped = new StringBuilder(path.length());
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == ' ' || c == '#') {
+				escaped.append('\\');
+			} else if (c == '$') {
+				escaped.append('$');
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,61 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.genivi.commonapi.console.ConsoleLogger;
+
+/**
+ * Console output that belongs to the generation of a single input file.
+ *
+ * An immediate log forwards each message directly to the ConsoleLogger. A
+ * buffered log keeps the messages until flush() is called, so that the output
+ * of files that are processed concurrently can be printed in input order.
+ */
+public class GenerationLog {
+
+	private final boolean buffered;
+	private final List<String> messages = new ArrayList<String>();
+	private final List<Boolean> isError = new ArrayList<Boolean>();
+
+	public GenerationLog(boolean buffered) {
+		this.buffered = buffered;
+	}
+
+	public synchronized void printLog(String message) {
+		if (buffered) {
+			messages.add(message);
+			isError.add(false);
+		} else {
+			ConsoleLogger.printLog(message);
+		}
+	}
+
+	public synchronized void printErrorLog(String message) {
+		if (buffered) {
+			messages.add(message);
+			isError.add(true);
+		} else {
+			ConsoleLogger.printErrorLog(message);
+		}
+	}
+
+	/**
+	 * Print all buffered messages in the order they were logged.
+	 */
+	public synchronized void flush() {
+		for (int i = 0; i < messages.size(); i++) {
+			if (isError.get(i)) {
+				ConsoleLogger.printErrorLog(messages.get(i));
+			} else {
+				ConsoleLogger.printLog(messages.get(i));
+			}
+		}
+		messages.clear();
+		isError.clear();
+	}
+}
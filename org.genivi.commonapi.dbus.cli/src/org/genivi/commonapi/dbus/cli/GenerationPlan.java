@@ -0,0 +1,138 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.genivi.commonapi.console.ConsoleLogger;
+
+/**
+ * The files that a generation run would produce for each input file,
+ * collected in plan mode without rendering any code.
+ */
+public class GenerationPlan {
+
+	private final List<String> inputs;
+	private final Map<String, Set<String>> outputs = new ConcurrentHashMap<String, Set<String>>();
+
+	/**
+	 * @param inputs
+	 *            the input files of the run in their order
+	 */
+	public GenerationPlan(List<String> inputs) {
+		this.inputs = new ArrayList<String>(inputs);
+	}
+
+	/**
+	 * Add the files that would be generated for an input.
+	 */
+	public void add(String input, Collection<String> files) {
+		Set<String> itsFiles = new TreeSet<String>();
+		for (String file : files) {
+			itsFiles.add(new File(file).getAbsolutePath());
+		}
+		outputs.put(input, itsFiles);
+	}
+
+	/**
+	 * @return all files that would be generated, sorted and without
+	 *         duplicates
+	 */
+	public Set<String> getAllFiles() {
+		Set<String> allFiles = new TreeSet<String>();
+		for (Set<String> itsFiles : outputs.values()) {
+			allFiles.addAll(itsFiles);
+		}
+		return allFiles;
+	}
+
+	/**
+	 * Print all files that would be generated, one per line.
+	 */
+	public void print() {
+		for (String file : getAllFiles()) {
+			ConsoleLogger.printLog(file);
+		}
+	}
+
+	/**
+	 * Write the plan as JSON:
+	 *
+	 * <pre>
+	 * {
+	 *   "inputs": [ { "input": "...", "outputs": [ "...", ... ] }, ... ],
+	 *   "outputs": [ "...", ... ]
+	 * }
+	 * </pre>
+	 */
+	public void writeJson(String fileName) throws IOException {
+		try (PrintWriter writer = new PrintWriter(
+				new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+			writer.println("{");
+			writer.println("  \"inputs\": [");
+			List<String> planned = new ArrayList<String>();
+			for (String input : inputs) {
+				if (outputs.containsKey(input)) {
+					planned.add(input);
+				}
+			}
+			for (int i = 0; i < planned.size(); i++) {
+				String input = planned.get(i);
+				writer.println("    {");
+				writer.println("      \"input\": " + quote(input) + ",");
+				writer.print("      \"outputs\": ");
+				writeArray(writer, outputs.get(input), "      ");
+				writer.println();
+				writer.println(i + 1 < planned.size() ? "    }," : "    }");
+			}
+			writer.println("  ],");
+			writer.print("  \"outputs\": ");
+			writeArray(writer, getAllFiles(), "  ");
+			writer.println();
+			writer.println("}");
+		}
+	}
+
+	private static void writeArray(PrintWriter writer, Collection<String> values, String indent) {
+		if (values.isEmpty()) {
+			writer.print("[]");
+			return;
+		}
+		writer.println("[");
+		List<String> itsValues = new ArrayList<String>(values);
+		for (int i = 0; i < itsValues.size(); i++) {
+			writer.print(indent + "  " + quote(itsValues.get(i)));
+			writer.println(i + 1 < itsValues.size() ? "," : "");
+		}
+		writer.print(indent + "]");
+	}
+
+	static String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,208 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.emf.common.util.URI;
+import org.genivi.commonapi.console.ConsoleLogger;
+
+/**
+ * Watches the input files, the models and deployments they import and the
+ * search path, and regenerates the inputs that are affected by a change: the
+ * changed file itself and all inputs that import it, directly or indirectly.
+ *
+ * The models stay loaded in the model cache between the generations. Only the
+ * changed files and the models importing them are loaded again. Files that are
+ * added to the search path become new inputs, deleted inputs are dropped.
+ */
+public class GenerationWatcher {
+
+	/**
+	 * Time without further changes before the generation starts, so that
+	 * saving several files at once triggers a single generation
+	 */
+	private static final long QUIET_PERIOD = 200;
+
+	private final DBusCommandlineToolMain cliTool;
+	private final ModelCache modelCache;
+	private final List<String> inputs;
+	private final Path searchPath;
+	private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+	private final Set<Path> watched = new HashSet<Path>();
+	private WatchService watchService;
+	private boolean isOverflow = false;
+
+	/**
+	 * @param cliTool
+	 *            generates the affected inputs
+	 * @param modelCache
+	 *            the model cache of the generations
+	 * @param inputs
+	 *            the input files
+	 * @param searchPath
+	 *            the directory that is searched for input files, or null
+	 */
+	public GenerationWatcher(DBusCommandlineToolMain cliTool, ModelCache modelCache, List<String> inputs,
+			String searchPath) {
+		this.cliTool = cliTool;
+		this.modelCache = modelCache;
+		this.inputs = new ArrayList<String>();
+		for (String input : inputs) {
+			this.inputs.add(key(Paths.get(input)));
+		}
+		this.searchPath = (searchPath != null ? Paths.get(searchPath).toAbsolutePath().normalize() : null);
+	}
+
+	/**
+	 * Watch for changes until the thread is interrupted or the process is
+	 * terminated.
+	 */
+	public void run() throws IOException, InterruptedException {
+		try (WatchService service = FileSystems.getDefault().newWatchService()) {
+			watchService = service;
+			registerDirectories();
+			ConsoleLogger.printLog("Watching " + watched.size() + " directories for changes");
+			while (!Thread.currentThread().isInterrupted()) {
+				Set<String> changed = waitForChanges();
+				List<String> affected = getAffectedInputs(changed);
+				if (isOverflow) {
+					modelCache.clear();
+					isOverflow = false;
+				} else {
+					modelCache.evict(changed);
+				}
+				if (!affected.isEmpty()) {
+					for (String file : changed) {
+						ConsoleLogger.printLog("Changed: " + file);
+					}
+					cliTool.generateDBus(affected);
+				}
+				registerDirectories();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next changes of models and deployments.
+	 *
+	 * @return the keys of the changed files
+	 */
+	private Set<String> waitForChanges() throws InterruptedException {
+		Set<String> changed = new TreeSet<String>();
+		WatchKey watchKey = watchService.take();
+		while (watchKey != null) {
+			Path directory = directories.get(watchKey);
+			for (WatchEvent<?> event : watchKey.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					isOverflow = true;
+				} else if (directory != null) {
+					Path file = directory.resolve((Path) event.context());
+					if (isModel(file)) {
+						changed.add(key(file));
+					}
+				}
+			}
+			if (!watchKey.reset()) {
+				watched.remove(directories.remove(watchKey));
+			}
+			watchKey = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+		}
+		return changed;
+	}
+
+	/**
+	 * Update the inputs with the files that were added to or deleted from the
+	 * search path and collect the inputs that must be generated again, in
+	 * input order.
+	 */
+	private List<String> getAffectedInputs(Set<String> changed) {
+		for (Iterator<String> it = inputs.iterator(); it.hasNext();) {
+			String input = it.next();
+			if (changed.contains(input) && !new File(input).isFile()) {
+				ConsoleLogger.printLog("Removed: " + input);
+				it.remove();
+			}
+		}
+		List<String> affected = new ArrayList<String>();
+		for (String input : inputs) {
+			if (isOverflow || !Collections.disjoint(modelCache.getImportClosure(URI.createFileURI(input)), changed)) {
+				affected.add(input);
+			}
+		}
+		if (searchPath != null) {
+			for (String file : changed) {
+				if (Paths.get(file).startsWith(searchPath) && new File(file).isFile() && !inputs.contains(file)) {
+					ConsoleLogger.printLog("Added: " + file);
+					inputs.add(file);
+					affected.add(file);
+				}
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * Watch the directories of the inputs and of all models they import, and
+	 * the search path with all its subdirectories.
+	 */
+	private void registerDirectories() throws IOException {
+		Set<Path> itsDirectories = new HashSet<Path>();
+		for (String input : inputs) {
+			for (String file : modelCache.getImportClosure(URI.createFileURI(input))) {
+				Path directory = Paths.get(file).getParent();
+				if (directory != null) {
+					itsDirectories.add(directory);
+				}
+			}
+		}
+		if (searchPath != null && Files.isDirectory(searchPath)) {
+			try (Stream<Path> paths = Files.walk(searchPath)) {
+				paths.filter(Files::isDirectory).forEach(itsDirectories::add);
+			}
+		}
+		for (Path directory : itsDirectories) {
+			if (!watched.contains(directory) && Files.isDirectory(directory)) {
+				directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE),
+						directory);
+				watched.add(directory);
+			}
+		}
+	}
+
+	private static boolean isModel(Path file) {
+		String name = file.getFileName().toString();
+		return name.endsWith("." + CommandLineHandlerDBus.FILE_EXTENSION_FIDL)
+				|| name.endsWith("." + CommandLineHandlerDBus.FILE_EXTENSION_FDEPL);
+	}
+
+	private static String key(Path file) {
+		return file.toAbsolutePath().normalize().toString();
+	}
+}
@@ -0,0 +1,103 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Thin client of the generator server (see GeneratorServer). It forwards its
+ * command line arguments and working directory to the running server and
+ * prints the output of the server.
+ *
+ * The client only depends on the Java runtime, so it starts without the
+ * OSGi framework:
+ *
+ * <pre>
+ * java -cp org.genivi.commonapi.dbus.cli_&lt;version&gt;.jar org.genivi.commonapi.dbus.cli.GeneratorClient [options] files
+ * </pre>
+ *
+ * The argument --stop-server terminates the server.
+ */
+public class GeneratorClient {
+
+	/**
+	 * The file in the user's home directory, where the server publishes its
+	 * port and access token.
+	 */
+	public static final String STATE_FILE = ".commonapi-dbus-generator-server";
+	public static final String STOP_SERVER = "--stop-server";
+
+	static final int FRAME_EXIT = 0;
+	static final int FRAME_OUT = 1;
+	static final int FRAME_ERR = 2;
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	public static File getStateFile() {
+		return new File(System.getProperty("user.home"), STATE_FILE);
+	}
+
+	static int run(String[] args) {
+		Properties state = new Properties();
+		try (InputStream in = new FileInputStream(getStateFile())) {
+			state.load(in);
+		} catch (IOException e) {
+			System.err.println("No generator server is running (" + getStateFile() + " not found)");
+			return 1;
+		}
+
+		int port;
+		try {
+			port = Integer.parseInt(state.getProperty("port", ""));
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid generator server state in " + getStateFile());
+			return 1;
+		}
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeUTF(state.getProperty("token", ""));
+			out.writeUTF(new File("").getAbsolutePath());
+			out.writeInt(args.length);
+			for (String arg : args) {
+				out.writeUTF(arg);
+			}
+			out.flush();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (true) {
+				int type = in.read();
+				if (type == FRAME_EXIT) {
+					return in.readInt();
+				}
+				if (type < 0) {
+					System.err.println("The generator server closed the connection");
+					return 1;
+				}
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				PrintStream target = (type == FRAME_ERR ? System.err : System.out);
+				target.write(data, 0, data.length);
+				target.flush();
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to connect to the generator server: " + e.getMessage());
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,322 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.franca.core.dsl.FrancaIDLRuntimeModule;
+import org.genivi.commonapi.console.ConsoleLogger;
+import org.genivi.commonapi.dbus.preferences.FPreferencesDBus;
+import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Serves generation requests of GeneratorClient, so that the OSGi framework,
+ * the injector and the loaded models are kept warm between invocations.
+ *
+ * The server listens on the loopback interface and publishes its port and a
+ * random access token in a file that only the user may read. Requests are
+ * processed one after the other; a client that does not send its request in
+ * time is disconnected. Each request gets the default preferences,
+ * relative paths are resolved against the working directory of the client
+ * and the console output is sent back to the client.
+ */
+public class GeneratorServer {
+
+	private static final String COMMANDS_EXTENSION_POINT = "org.genivi.commonapi.console.commands";
+	private static final String COMMAND_ID = "org.genivi.commonapi.dbus.cli.command";
+
+	/**
+	 * The options whose values are file system paths
+	 */
+	private static final Set<String> PATH_OPTIONS = new HashSet<String>(
+			Arrays.asList("d", "dc", "dp", "ds", "l", "sp", "df", "pj", "os", "prof"));
+
+	/**
+	 * The time a client may take to send its request, in milliseconds. A
+	 * client that stalls must not block the server for other clients.
+	 */
+	private static final int REQUEST_TIMEOUT = 10000;
+
+	/**
+	 * The maximum number of arguments of a request
+	 */
+	private static final int MAX_ARGUMENTS = 65536;
+
+	private static final String[] OUTPUT_PREFERENCES = {
+			PreferenceConstantsDBus.P_OUTPUT_DEFAULT_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_COMMON_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_PROXIES_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_STUBS_DBUS };
+
+	private final Injector injector;
+	private final ModelCache modelCache;
+	private final Options options;
+	private String token;
+	private boolean isRunning = true;
+
+	public GeneratorServer() {
+		injector = Guice.createInjector(new FrancaIDLRuntimeModule());
+		modelCache = new ModelCache(injector.getProvider(XtextResourceSet.class).get());
+		options = createOptions();
+	}
+
+	/**
+	 * Serve requests until a client sends --stop-server.
+	 *
+	 * @return the exit code of the server
+	 */
+	public int run() {
+		File stateFile = GeneratorClient.getStateFile();
+		try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			token = createToken();
+			writeState(stateFile, serverSocket.getLocalPort());
+			ConsoleLogger.printLog("Generator server listening on port " + serverSocket.getLocalPort());
+
+			while (isRunning) {
+				try (Socket socket = serverSocket.accept()) {
+					socket.setSoTimeout(REQUEST_TIMEOUT);
+					handle(socket);
+				} catch (IOException e) {
+					ConsoleLogger.printErrorLog("Generator request failed: " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			ConsoleLogger.printErrorLog("Failed to start the generator server: " + e.getMessage());
+			return 1;
+		} finally {
+			stateFile.delete();
+		}
+		ConsoleLogger.printLog("Generator server stopped");
+		return 0;
+	}
+
+	private void handle(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		// Compare in constant time, so that the token cannot be guessed from
+		// the response time
+		if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+				in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+			return;
+		}
+		String workingDirectory = in.readUTF();
+		int argumentCount = in.readInt();
+		if (argumentCount < 0 || argumentCount > MAX_ARGUMENTS) {
+			throw new IOException("Invalid number of arguments: " + argumentCount);
+		}
+		String[] args = new String[argumentCount];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = in.readUTF();
+		}
+
+		int exitCode;
+		if (args.length == 1 && GeneratorClient.STOP_SERVER.equals(args[0])) {
+			isRunning = false;
+			exitCode = 0;
+		} else {
+			PrintStream systemOut = System.out;
+			PrintStream systemErr = System.err;
+			PrintStream clientOut = new PrintStream(new FrameOutputStream(out, GeneratorClient.FRAME_OUT), true, "UTF-8");
+			PrintStream clientErr = new PrintStream(new FrameOutputStream(out, GeneratorClient.FRAME_ERR), true, "UTF-8");
+			System.setOut(clientOut);
+			System.setErr(clientErr);
+			try {
+				exitCode = execute(args, workingDirectory);
+			} catch (Exception e) {
+				System.err.println("Failed to generate dbus code: " + e.getMessage());
+				exitCode = 1;
+			} finally {
+				clientOut.flush();
+				clientErr.flush();
+				System.setOut(systemOut);
+				System.setErr(systemErr);
+			}
+		}
+		out.write(GeneratorClient.FRAME_EXIT);
+		out.writeInt(exitCode);
+		out.flush();
+	}
+
+	/**
+	 * Execute one request like a fresh command line invocation.
+	 */
+	private int execute(String[] args, String workingDirectory) throws ParseException {
+		CommandLine parsedArguments = new DefaultParser().parse(options, resolvePaths(args, workingDirectory));
+		if (parsedArguments.hasOption("srv")) {
+			System.err.println("The generator server is already running");
+			return 1;
+		}
+		if (parsedArguments.hasOption("w")) {
+			System.err.println("The generator server does not support watch mode");
+			return 1;
+		}
+
+		ConsoleLogger.enableLogging(true);
+		ConsoleLogger.enableErrorLogging(true);
+		FPreferencesDBus preferences = FPreferencesDBus.getInstance();
+		preferences.resetToDefaults();
+		for (String preference : OUTPUT_PREFERENCES) {
+			String value = preferences.getPreference(preference, PreferenceConstantsDBus.DEFAULT_OUTPUT);
+			preferences.setPreference(preference, resolve(value, workingDirectory));
+		}
+
+		DBusCommandlineToolMain cliTool = new DBusCommandlineToolMain(injector);
+		cliTool.setSharedModelCache(modelCache);
+		return new CommandLineHandlerDBus(cliTool).excute(parsedArguments);
+	}
+
+	/**
+	 * Make the input files and the values of path options absolute.
+	 */
+	private String[] resolvePaths(String[] args, String workingDirectory) {
+		List<String> resolved = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			resolved.add(arg);
+			if (arg.startsWith("-")) {
+				Option option = options.getOption(arg);
+				if (option != null) {
+					for (int j = 0; j < option.getArgs() && i + 1 < args.length; j++) {
+						String value = args[++i];
+						resolved.add(PATH_OPTIONS.contains(option.getOpt()) ? resolve(value, workingDirectory) : value);
+					}
+				}
+			} else {
+				resolved.set(resolved.size() - 1, resolve(arg, workingDirectory));
+			}
+		}
+		return resolved.toArray(new String[resolved.size()]);
+	}
+
+	private static String resolve(String path, String workingDirectory) {
+		File file = new File(path);
+		if (file.isAbsolute()) {
+			return path;
+		}
+		return new File(workingDirectory, path).getPath();
+	}
+
+	/**
+	 * Create the command line options from the extension that declares them
+	 * for the console application.
+	 */
+	private static Options createOptions() {
+		Options options = new Options();
+		for (IConfigurationElement command : Platform.getExtensionRegistry()
+				.getConfigurationElementsFor(COMMANDS_EXTENSION_POINT)) {
+			if (!COMMAND_ID.equals(command.getAttribute("id"))) {
+				continue;
+			}
+			for (IConfigurationElement optionGroup : command.getChildren("options")) {
+				for (IConfigurationElement element : optionGroup.getChildren("option")) {
+					Option.Builder builder = Option.builder(element.getAttribute("shortName"))
+							.longOpt(element.getAttribute("longName"))
+							.desc(element.getAttribute("description"))
+							.optionalArg(Boolean.parseBoolean(element.getAttribute("hasOptionalArg")));
+					int argCount = Integer.parseInt(element.getAttribute("argCount"));
+					if (argCount > 0) {
+						builder.numberOfArgs(argCount);
+					}
+					options.addOption(builder.build());
+				}
+			}
+		}
+		return options;
+	}
+
+	private static String createToken() {
+		byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		StringBuilder itsToken = new StringBuilder();
+		for (byte b : bytes) {
+			itsToken.append(String.format("%02x", b));
+		}
+		return itsToken.toString();
+	}
+
+	private void writeState(File stateFile, int port) throws IOException {
+		stateFile.delete();
+		stateFile.createNewFile();
+		try {
+			Files.setPosixFilePermissions(stateFile.toPath(), PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException e) {
+			stateFile.setReadable(false, false);
+			stateFile.setReadable(true, true);
+		}
+		Properties state = new Properties();
+		state.setProperty("port", String.valueOf(port));
+		state.setProperty("token", token);
+		try (OutputStream out = new FileOutputStream(stateFile)) {
+			state.store(out, "CommonAPI D-Bus generator server");
+		}
+	}
+
+	/**
+	 * Sends everything written to it as frames of the given type.
+	 */
+	private static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final int type;
+
+		FrameOutputStream(DataOutputStream out, int type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return;
+			}
+			out.write(type);
+			out.writeInt(len);
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+	}
+}
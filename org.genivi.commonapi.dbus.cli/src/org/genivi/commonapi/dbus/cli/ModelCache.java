@@ -0,0 +1,252 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.cli;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.franca.core.franca.FModel;
+import org.franca.core.franca.Import;
+import org.franca.deploymodel.dsl.fDeploy.FDModel;
+
+/**
+ * Keeps the parsed and linked fidl/fdepl models of a resource set alive
+ * across the input files of one command line invocation.
+ *
+ * Resources are keyed by their normalized absolute path. Each entry remembers
+ * the modification time and size of its file. The files an input imports are
+ * checked once when the input is looked up; a changed file is dropped together
+ * with all cached models that import it, because they are linked against the
+ * stale one.
+ */
+public class ModelCache {
+
+	private final XtextResourceSet resourceSet;
+	private final Map<String, Resource> resources = new HashMap<String, Resource>();
+	private final Map<String, String> stamps = new HashMap<String, String>();
+	private int hits = 0;
+	private int misses = 0;
+
+	public ModelCache(XtextResourceSet resourceSet) {
+		this.resourceSet = resourceSet;
+	}
+
+	public XtextResourceSet getResourceSet() {
+		return resourceSet;
+	}
+
+	/**
+	 * Get the resource for the given input file. An already loaded resource
+	 * is reused if neither its file nor the files it imports changed since
+	 * they were loaded. Only the files of the input are checked.
+	 *
+	 * @param uri
+	 *            the file URI of the input
+	 * @return the cached or a newly created resource
+	 */
+	public Resource getResource(URI uri) {
+		Set<String> staleKeys = getStale(getImportClosure(uri));
+		if (!staleKeys.isEmpty()) {
+			evict(staleKeys);
+		}
+		Resource resource = resources.get(key(uri));
+		if (resource == null) {
+			resource = resourceSet.getResource(uri, false);
+		}
+		if (resource == null) {
+			resource = resourceSet.createResource(uri);
+		}
+		return resource;
+	}
+
+	/**
+	 * Register all resources that were loaded while processing the given input
+	 * and count which of the input's (transitive) imports were found in the
+	 * cache.
+	 *
+	 * @param input
+	 *            the resource of the processed input file
+	 */
+	public void update(Resource input) {
+		for (String itsKey : getImportClosure(input)) {
+			if (resources.containsKey(itsKey)) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		for (Resource resource : new ArrayList<Resource>(resourceSet.getResources())) {
+			String itsKey = key(resource.getURI());
+			if (!resources.containsKey(itsKey)) {
+				resources.put(itsKey, resource);
+				stamps.put(itsKey, stamp(resource.getURI()));
+			}
+		}
+	}
+
+	/**
+	 * Drop all cached resources.
+	 */
+	public void clear() {
+		for (Resource resource : resourceSet.getResources()) {
+			resource.unload();
+		}
+		resourceSet.getResources().clear();
+		resources.clear();
+		stamps.clear();
+	}
+
+	/**
+	 * Drop the resources of the given files and all cached resources that
+	 * import them, directly or indirectly. The other resources stay loaded.
+	 *
+	 * @param keys
+	 *            the keys of the changed files
+	 */
+	public void evict(Set<String> keys) {
+		List<String> evicted = new ArrayList<String>();
+		for (Map.Entry<String, Resource> itsEntry : resources.entrySet()) {
+			if (!Collections.disjoint(getImportClosure(itsEntry.getValue()), keys)) {
+				evicted.add(itsEntry.getKey());
+			}
+		}
+		for (String itsKey : evicted) {
+			Resource resource = resources.remove(itsKey);
+			stamps.remove(itsKey);
+			resource.unload();
+			resourceSet.getResources().remove(resource);
+		}
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Check whether one of the given files changed since it was loaded.
+	 */
+	public boolean isStale(Set<String> keys) {
+		return !getStale(keys).isEmpty();
+	}
+
+	private Set<String> getStale(Set<String> keys) {
+		Set<String> staleKeys = new HashSet<String>();
+		for (String itsKey : keys) {
+			String itsStamp = stamps.get(itsKey);
+			if (itsStamp != null && !itsStamp.equals(stamp(itsKey))) {
+				staleKeys.add(itsKey);
+			}
+		}
+		return staleKeys;
+	}
+
+	/**
+	 * Collect the keys of the given resource and all resources it imports,
+	 * directly or indirectly, as far as they are loaded.
+	 */
+	public Set<String> getImportClosure(Resource input) {
+		Set<String> closure = new HashSet<String>();
+		for (Resource resource : getResourceClosure(input)) {
+			closure.add(key(resource.getURI()));
+		}
+		return closure;
+	}
+
+	/**
+	 * Collect the keys of the given file and all cached resources it imports,
+	 * directly or indirectly. Only the key of the file itself is returned if
+	 * it is not cached.
+	 */
+	public Set<String> getImportClosure(URI uri) {
+		Resource resource = resources.get(key(uri));
+		if (resource == null) {
+			return Collections.singleton(key(uri));
+		}
+		return getImportClosure(resource);
+	}
+
+	/**
+	 * Collect the given resource and all loaded resources it imports,
+	 * directly or indirectly, in breadth first order.
+	 */
+	public List<Resource> getResourceClosure(Resource input) {
+		List<Resource> closure = new ArrayList<Resource>();
+		Set<String> keys = new HashSet<String>();
+		List<Resource> todo = new LinkedList<Resource>();
+		todo.add(input);
+		while (!todo.isEmpty()) {
+			Resource resource = todo.remove(0);
+			if (resource == null || !keys.add(key(resource.getURI()))) {
+				continue;
+			}
+			closure.add(resource);
+			for (String importURI : getImportURIs(resource)) {
+				URI uri = URI.createURI(importURI);
+				if (uri.isRelative()) {
+					uri = uri.resolve(resource.getURI());
+				}
+				todo.add(resourceSet.getResource(uri, false));
+			}
+		}
+		return closure;
+	}
+
+	private static List<String> getImportURIs(Resource resource) {
+		List<String> importURIs = new ArrayList<String>();
+		if (resource.getContents().isEmpty()) {
+			return importURIs;
+		}
+		EObject model = resource.getContents().get(0);
+		if (model instanceof FModel) {
+			for (Import anImport : ((FModel) model).getImports()) {
+				importURIs.add(anImport.getImportURI());
+			}
+		}
+		if (model instanceof FDModel) {
+			for (org.franca.deploymodel.dsl.fDeploy.Import anImport : ((FDModel) model).getImports()) {
+				importURIs.add(anImport.getImportURI());
+			}
+		}
+		return importURIs;
+	}
+
+	/**
+	 * The normalized absolute path of file URIs, the URI string otherwise.
+	 */
+	public static String key(URI uri) {
+		if (uri.isFile()) {
+			return Paths.get(uri.toFileString()).toAbsolutePath().normalize().toString();
+		}
+		return uri.toString();
+	}
+
+	private static String stamp(URI uri) {
+		return stamp(key(uri));
+	}
+
+	private static String stamp(String key) {
+		File file = new File(key);
+		if (!file.isFile()) {
+			return "";
+		}
+		return file.lastModified() + ":" + file.length();
+	}
+}
@@ -10,8 +10,13 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.emf.common.util.BasicDiagnostic;
 import org.eclipse.emf.common.util.Diagnostic;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -25,8 +30,14 @@ import org.genivi.commonapi.dbus.preferences.FPreferencesDBus;
 import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus;
 import org.genivi.commonapi.dbus.ui.CommonApiDBusUiPlugin;
 
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
 public class DBusGenerationCommand  extends GenerationCommand {
 
+	@Inject
+	private Provider<DBusResourceFileSystemAccess> dbusFileAccessProvider;
+
 	/**
 	 * Init dbus preferences
 	 * @param page
@@ -41,7 +52,8 @@ public class DBusGenerationCommand  extends GenerationCommand {
 	@Override
 	protected EclipseResourceFileSystemAccess2 createFileSystemAccess() {
 
-		final EclipseResourceFileSystemAccess2 fsa = fileAccessProvider.get();
+		// Count the written and the unchanged generated files
+		final EclipseResourceFileSystemAccess2 fsa = dbusFileAccessProvider.get();
 
 		fsa.setMonitor(new NullProgressMonitor());
 
@@ -51,7 +63,25 @@ public class DBusGenerationCommand  extends GenerationCommand {
 	@Override
 	protected void setupOutputDirectories(EclipseResourceFileSystemAccess2 fileSystemAccess) {
 		fileSystemAccess.setOutputConfigurations(FPreferencesDBus.getInstance().getOutputpathConfiguration());
+
+		// The generation runs in a job, report the written and skipped files when it is done
+		Job job = Job.getJobManager().currentJob();
+		if (job != null && fileSystemAccess instanceof DBusResourceFileSystemAccess) {
+			final DBusResourceFileSystemAccess dbusFileAccess = (DBusResourceFileSystemAccess) fileSystemAccess;
+			job.addJobChangeListener(new JobChangeAdapter() {
+				@Override
+				public void done(IJobChangeEvent event) {
+					event.getJob().removeJobChangeListener(this);
+					printWriteStatistics(dbusFileAccess.getWritten(), dbusFileAccess.getSkipped());
+				}
+			});
+		}
 	}	
+
+	protected void printWriteStatistics(int written, int skipped) {
+		CommonApiDBusUiPlugin.getDefault().getLog().log(new Status(IStatus.INFO, CommonApiDBusUiPlugin.PLUGIN_ID,
+				"Generated files: " + written + " written, " + skipped + " unchanged"));
+	}
 	
 	
 	/**
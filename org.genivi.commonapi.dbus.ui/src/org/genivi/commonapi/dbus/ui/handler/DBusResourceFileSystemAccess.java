@@ -0,0 +1,39 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.ui.handler;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.xtext.builder.EclipseResourceFileSystemAccess2;
+
+/**
+ * Workspace file system access that counts written and skipped files.
+ * EclipseResourceFileSystemAccess2 already leaves a file untouched if its
+ * content did not change; such a file keeps its modification stamp.
+ */
+public class DBusResourceFileSystemAccess extends EclipseResourceFileSystemAccess2 {
+
+	private int written = 0;
+	private int skipped = 0;
+
+	@Override
+	public void generateFile(String fileName, String outputConfigName, CharSequence contents) {
+		IFile file = getFile(fileName, outputConfigName);
+		long stamp = file.getModificationStamp();
+		super.generateFile(fileName, outputConfigName, contents);
+		if (file.getModificationStamp() == stamp) {
+			skipped++;
+		} else {
+			written++;
+		}
+	}
+
+	public int getWritten() {
+		return written;
+	}
+
+	public int getSkipped() {
+		return skipped;
+	}
+}
@@ -4,6 +4,10 @@
    file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.genivi.commonapi.dbus.deployment;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.eclipse.emf.ecore.EObject;
 import org.franca.core.franca.FArgument;
 import org.franca.core.franca.FArrayType;
@@ -27,6 +31,20 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 
 	PropertyAccessor parent_;
 	String name_;
+
+	// Child accessors and resolved property values are memoized per element,
+	// as the proxy, stub adapter and deployment generators query the same
+	// elements over and over again.
+	private final Map<EObject, PropertyAccessor> overwriteAccessors_ = new IdentityHashMap<EObject, PropertyAccessor>();
+	private final Map<EObject, Boolean> isObjectPath_ = new IdentityHashMap<EObject, Boolean>();
+	private final Map<EObject, Boolean> isUnixFD_ = new IdentityHashMap<EObject, Boolean>();
+	private final Map<EObject, DBusVariantType> variantType_ = new IdentityHashMap<EObject, DBusVariantType>();
+	private final Map<EObject, Integer> notificationInterval_ = new IdentityHashMap<EObject, Integer>();
+	private final Map<EObject, PropertiesType> propertiesType_ = new IdentityHashMap<EObject, PropertiesType>();
+	private final Map<EObject, String> signatures_ = new IdentityHashMap<EObject, String>();
+
+	private static final AtomicLong lookups_ = new AtomicLong();
+	private static final AtomicLong resolutions_ = new AtomicLong();
 	
 	public enum PropertiesType {
 		CommonAPI, freedesktop
@@ -163,6 +181,15 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 		return parent_;
 	}
 	public PropertyAccessor getOverwriteAccessor(EObject _object) {
+		lookups_.incrementAndGet();
+		if (overwriteAccessors_.containsKey(_object))
+			return overwriteAccessors_.get(_object);
+		resolutions_.incrementAndGet();
+		PropertyAccessor accessor = createOverwriteAccessor(_object);
+		overwriteAccessors_.put(_object, accessor);
+		return accessor;
+	}
+	private PropertyAccessor createOverwriteAccessor(EObject _object) {
 		if (_object instanceof FArgument)
 			return new PropertyAccessor(this, (FArgument)_object);
 		if (_object instanceof FAttribute)
@@ -186,6 +213,15 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 		return parent_.hasSameAccessor(_accessor);
 	}
 	public PropertiesType getPropertiesType (FInterface obj) {
+		lookups_.incrementAndGet();
+		if (propertiesType_.containsKey(obj))
+			return propertiesType_.get(obj);
+		resolutions_.incrementAndGet();
+		PropertiesType propertiesType = resolvePropertiesType(obj);
+		propertiesType_.put(obj, propertiesType);
+		return propertiesType;
+	}
+	private PropertiesType resolvePropertiesType (FInterface obj) {
 		if (type_ == DeploymentType.INTERFACE) {
 			try {
 				return from(((Deployment.InterfacePropertyAccessor)dbusDataAccessor_).getDBusDefaultAttributeType(obj));
@@ -210,6 +246,15 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 	
 	
 	public Boolean getIsObjectPath (EObject obj) {
+		lookups_.incrementAndGet();
+		if (isObjectPath_.containsKey(obj))
+			return isObjectPath_.get(obj);
+		resolutions_.incrementAndGet();
+		Boolean isObjectPath = resolveIsObjectPath(obj);
+		isObjectPath_.put(obj, isObjectPath);
+		return isObjectPath;
+	}
+	private Boolean resolveIsObjectPath (EObject obj) {
 
 		try {
 			if (type_ != DeploymentType.PROVIDER)
@@ -220,6 +265,15 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 		return null;
 	}
 	public Boolean getIsUnixFD (EObject obj) {
+		lookups_.incrementAndGet();
+		if (isUnixFD_.containsKey(obj))
+			return isUnixFD_.get(obj);
+		resolutions_.incrementAndGet();
+		Boolean isUnixFD = resolveIsUnixFD(obj);
+		isUnixFD_.put(obj, isUnixFD);
+		return isUnixFD;
+	}
+	private Boolean resolveIsUnixFD (EObject obj) {
 
 		try {
 			if (type_ != DeploymentType.PROVIDER)
@@ -229,7 +283,53 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 
 		return null;
 	}	
+	/**
+	 * @return the minimum time in milliseconds between two change notifications
+	 *         of an attribute, or the coalescing window of the properties of an
+	 *         interface, or null if none is deployed
+	 */
+	public Integer getDBusNotificationInterval (EObject obj) {
+		lookups_.incrementAndGet();
+		if (notificationInterval_.containsKey(obj))
+			return notificationInterval_.get(obj);
+		resolutions_.incrementAndGet();
+		Integer notificationInterval = resolveDBusNotificationInterval(obj);
+		notificationInterval_.put(obj, notificationInterval);
+		return notificationInterval;
+	}
+	private Integer resolveDBusNotificationInterval (EObject obj) {
+		try {
+			Deployment.InterfacePropertyAccessor ipa = getInterfacePropertyAccessor();
+			if (ipa == null)
+				return null;
+			if (obj instanceof FAttribute)
+				return ipa.getDBusMinNotificationInterval((FAttribute) obj);
+			if (obj instanceof FInterface)
+				return ipa.getDBusPropertiesCoalescingInterval((FInterface) obj);
+		}
+		catch (java.lang.NullPointerException e) {}
+		return null;
+	}
+	// Properties of interfaces, attributes and arguments are only known to the
+	// accessor of the interface
+	private Deployment.InterfacePropertyAccessor getInterfacePropertyAccessor() {
+		PropertyAccessor itsAccessor = this;
+		while (itsAccessor != null && itsAccessor.type_ != DeploymentType.INTERFACE)
+			itsAccessor = itsAccessor.parent_;
+		if (itsAccessor == null)
+			return null;
+		return (Deployment.InterfacePropertyAccessor) itsAccessor.dbusDataAccessor_;
+	}
 	public DBusVariantType getDBusVariantType (FUnionType obj) {
+		lookups_.incrementAndGet();
+		if (variantType_.containsKey(obj))
+			return variantType_.get(obj);
+		resolutions_.incrementAndGet();
+		DBusVariantType variantType = resolveDBusVariantType(obj);
+		variantType_.put(obj, variantType);
+		return variantType;
+	}
+	private DBusVariantType resolveDBusVariantType (FUnionType obj) {
 		try {
 			return from(dbusDataAccessor_.getDBusVariantType(obj));
 		}
@@ -306,6 +406,43 @@ public class PropertyAccessor extends org.genivi.commonapi.core.deployment.Prope
 		return isDBusPredefined;
 	}
 
+	/**
+	 * @return the D-Bus signature that was computed for the element with this
+	 *         accessor or null, if it was not computed yet
+	 */
+	public String getSignature(EObject _element) {
+		return signatures_.get(_element);
+	}
+
+	/**
+	 * Remember the D-Bus signature of an element. Accessors are created per
+	 * generation run, so are the remembered signatures.
+	 */
+	public void putSignature(EObject _element, String _signature) {
+		signatures_.put(_element, _signature);
+	}
+
+	/**
+	 * @return the number of memoized lookups (child accessors and property
+	 *         values) since the last reset
+	 */
+	public static long getLookupCount() {
+		return lookups_.get();
+	}
+
+	/**
+	 * @return the number of lookups that had to be resolved from the
+	 *         deployment since the last reset
+	 */
+	public static long getResolutionCount() {
+		return resolutions_.get();
+	}
+
+	public static void resetStatistics() {
+		lookups_.set(0);
+		resolutions_.set(0);
+	}
+
 	public static void BroadcastType() {
 	  throw new UnsupportedOperationException("TODO: auto-generated method stub");
 	}
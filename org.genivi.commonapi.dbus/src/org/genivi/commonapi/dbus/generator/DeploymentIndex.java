@@ -0,0 +1,173 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.franca.core.franca.FInterface;
+import org.franca.core.franca.FTypeCollection;
+import org.franca.deploymodel.dsl.fDeploy.FDInterface;
+import org.franca.deploymodel.dsl.fDeploy.FDTypes;
+
+/**
+ * Maps deployed interfaces and type collections to their deployments.
+ *
+ * The maps are keyed by object identity of the deployment target. If a target
+ * is deployed several times, the deployments are kept in the order they were
+ * added and the last one is the effective deployment.
+ *
+ * The deployments of a set of targets are returned in the order they were
+ * added, so that a merge restricted to these targets applies them in the same
+ * order as a merge of all deployments.
+ */
+public class DeploymentIndex {
+
+	private final Map<FInterface, List<FDInterface>> interfaces = new IdentityHashMap<FInterface, List<FDInterface>>();
+	private final Map<FTypeCollection, List<FDTypes>> typeCollections = new IdentityHashMap<FTypeCollection, List<FDTypes>>();
+	private final List<FDInterface> allInterfaces = new ArrayList<FDInterface>();
+	private final List<FDTypes> allTypeCollections = new ArrayList<FDTypes>();
+	private final Map<Object, Integer> order = new IdentityHashMap<Object, Integer>();
+
+	public void addInterface(FDInterface deployment) {
+		List<FDInterface> itsDeployments = interfaces.get(deployment.getTarget());
+		if (itsDeployments == null) {
+			itsDeployments = new ArrayList<FDInterface>(1);
+			interfaces.put(deployment.getTarget(), itsDeployments);
+		}
+		itsDeployments.add(deployment);
+		allInterfaces.add(deployment);
+		order.put(deployment, order.size());
+	}
+
+	public void addInterfaces(Collection<FDInterface> deployments) {
+		for (FDInterface deployment : deployments) {
+			addInterface(deployment);
+		}
+	}
+
+	public void addTypeCollection(FDTypes deployment) {
+		List<FDTypes> itsDeployments = typeCollections.get(deployment.getTarget());
+		if (itsDeployments == null) {
+			itsDeployments = new ArrayList<FDTypes>(1);
+			typeCollections.put(deployment.getTarget(), itsDeployments);
+		}
+		itsDeployments.add(deployment);
+		allTypeCollections.add(deployment);
+		order.put(deployment, order.size());
+	}
+
+	public void addTypeCollections(Collection<FDTypes> deployments) {
+		for (FDTypes deployment : deployments) {
+			addTypeCollection(deployment);
+		}
+	}
+
+	public boolean hasInterfaceDeployment(FInterface target) {
+		return target != null && interfaces.containsKey(target);
+	}
+
+	public boolean hasTypeCollectionDeployment(FTypeCollection target) {
+		return target != null && typeCollections.containsKey(target);
+	}
+
+	/**
+	 * @return the deployments of all interfaces, in the order they were added
+	 */
+	public List<FDInterface> getInterfaceDeployments() {
+		return allInterfaces;
+	}
+
+	/**
+	 * @return the deployments of all type collections, in the order they were
+	 *         added
+	 */
+	public List<FDTypes> getTypeCollectionDeployments() {
+		return allTypeCollections;
+	}
+
+	/**
+	 * @return all deployments of the interface, in the order they were added
+	 */
+	public List<FDInterface> getInterfaceDeployments(FInterface target) {
+		List<FDInterface> itsDeployments = (target != null ? interfaces.get(target) : null);
+		if (itsDeployments == null) {
+			return Collections.emptyList();
+		}
+		return itsDeployments;
+	}
+
+	/**
+	 * @return all deployments of the type collection (or of the types of an
+	 *         interface), in the order they were added
+	 */
+	public List<FDTypes> getTypeCollectionDeployments(FTypeCollection target) {
+		List<FDTypes> itsDeployments = (target != null ? typeCollections.get(target) : null);
+		if (itsDeployments == null) {
+			return Collections.emptyList();
+		}
+		return itsDeployments;
+	}
+
+	/**
+	 * @return all deployments of those targets that are interfaces, in the
+	 *         order they were added
+	 */
+	public List<FDInterface> getInterfaceDeployments(Collection<? extends FTypeCollection> targets) {
+		List<FDInterface> itsDeployments = new ArrayList<FDInterface>();
+		for (FTypeCollection target : targets) {
+			if (target instanceof FInterface) {
+				itsDeployments.addAll(getInterfaceDeployments((FInterface) target));
+			}
+		}
+		return sort(itsDeployments);
+	}
+
+	/**
+	 * @return all type collection deployments of the targets, in the order
+	 *         they were added
+	 */
+	public List<FDTypes> getTypeCollectionDeployments(Collection<? extends FTypeCollection> targets) {
+		List<FDTypes> itsDeployments = new ArrayList<FDTypes>();
+		for (FTypeCollection target : targets) {
+			itsDeployments.addAll(getTypeCollectionDeployments(target));
+		}
+		return sort(itsDeployments);
+	}
+
+	/**
+	 * @return the effective (last added) deployment of the interface or null
+	 */
+	public FDInterface getInterfaceDeployment(FInterface target) {
+		List<FDInterface> itsDeployments = getInterfaceDeployments(target);
+		return (itsDeployments.isEmpty() ? null : itsDeployments.get(itsDeployments.size() - 1));
+	}
+
+	/**
+	 * @return the effective (last added) deployment of the type collection or
+	 *         null
+	 */
+	public FDTypes getTypeCollectionDeployment(FTypeCollection target) {
+		List<FDTypes> itsDeployments = getTypeCollectionDeployments(target);
+		return (itsDeployments.isEmpty() ? null : itsDeployments.get(itsDeployments.size() - 1));
+	}
+
+	private <T> List<T> sort(List<T> deployments) {
+		if (deployments.size() > 1) {
+			Collections.sort(deployments, new Comparator<T>() {
+				@Override
+				public int compare(T first, T second) {
+					return Integer.compare(order.get(first), order.get(second));
+				}
+			});
+		}
+		return deployments;
+	}
+}
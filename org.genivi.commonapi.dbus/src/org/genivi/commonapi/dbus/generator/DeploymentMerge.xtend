@@ -0,0 +1,91 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator
+
+import java.util.ArrayList
+import java.util.List
+import javax.inject.Inject
+import org.eclipse.emf.ecore.util.EcoreUtil
+import org.franca.deploymodel.dsl.fDeploy.FDInterface
+import org.franca.deploymodel.dsl.fDeploy.FDTypes
+import org.genivi.commonapi.core.generator.FrancaGeneratorExtensions
+
+/**
+ * Merges the Core deployments into the DBus deployments.
+ *
+ * A DBus deployment only receives the Core deployments of its own target and
+ * of the interfaces and type collections its target refers to, in the order of
+ * the merge of all Core deployments into every DBus deployment. The merge
+ * helpers of the core generator merge nothing for the other pairs, so the
+ * result is the same, but the number of merged pairs no longer grows with the
+ * product of the numbers of deployments.
+ */
+class DeploymentMerge {
+    @Inject extension FrancaGeneratorExtensions
+
+    /**
+     * Merge the Core deployments that match the targets of the DBus deployments.
+     */
+    def void merge(DeploymentIndex _core, ModelDependencies _dependencies,
+                   List<FDInterface> _interfaces, List<FDTypes> _typeCollections) {
+        for (itsDBusDeployment : _interfaces) {
+            val itsTargets = _dependencies.getClosure(itsDBusDeployment.target)
+            for (itsCoreDeployment : _core.getInterfaceDeployments(itsTargets))
+                mergeDeployments(itsCoreDeployment, itsDBusDeployment)
+            for (itsCoreDeployment : _core.getTypeCollectionDeployments(itsTargets))
+                mergeDeployments(itsCoreDeployment, itsDBusDeployment)
+        }
+        for (itsDBusDeployment : _typeCollections) {
+            val itsTargets = _dependencies.getClosure(itsDBusDeployment.target)
+            for (itsCoreDeployment : _core.getTypeCollectionDeployments(itsTargets))
+                mergeDeploymentsExt(itsCoreDeployment, itsDBusDeployment)
+        }
+    }
+
+    /**
+     * Merge every Core deployment into every DBus deployment, as the generator
+     * did before the merge was restricted to the matching targets.
+     */
+    def void mergeAll(DeploymentIndex _core,
+                      List<FDInterface> _interfaces, List<FDTypes> _typeCollections) {
+        for (itsDBusDeployment : _interfaces) {
+            for (itsCoreDeployment : _core.interfaceDeployments)
+                mergeDeployments(itsCoreDeployment, itsDBusDeployment)
+            for (itsCoreDeployment : _core.typeCollectionDeployments)
+                mergeDeployments(itsCoreDeployment, itsDBusDeployment)
+        }
+        for (itsDBusDeployment : _typeCollections)
+            for (itsCoreDeployment : _core.typeCollectionDeployments)
+                mergeDeploymentsExt(itsCoreDeployment, itsDBusDeployment)
+    }
+
+    /**
+     * Merge copies of the DBus deployments both ways and compare the results.
+     * The deployments themselves are not changed.
+     *
+     * @return the names of the targets whose merged deployments differ
+     */
+    def List<String> check(DeploymentIndex _core, ModelDependencies _dependencies,
+                           List<FDInterface> _interfaces, List<FDTypes> _typeCollections) {
+        val itsInterfaces = new ArrayList<FDInterface>(EcoreUtil.copyAll(_interfaces))
+        val itsTypeCollections = new ArrayList<FDTypes>(EcoreUtil.copyAll(_typeCollections))
+        merge(_core, _dependencies, itsInterfaces, itsTypeCollections)
+
+        val allInterfaces = new ArrayList<FDInterface>(EcoreUtil.copyAll(_interfaces))
+        val allTypeCollections = new ArrayList<FDTypes>(EcoreUtil.copyAll(_typeCollections))
+        mergeAll(_core, allInterfaces, allTypeCollections)
+
+        val differences = new ArrayList<String>()
+        for (i : 0 ..< itsInterfaces.size) {
+            if (GeneratedUnits.fingerprint(itsInterfaces.get(i)) != GeneratedUnits.fingerprint(allInterfaces.get(i)))
+                differences.add(itsInterfaces.get(i).target.name)
+        }
+        for (i : 0 ..< itsTypeCollections.size) {
+            if (GeneratedUnits.fingerprint(itsTypeCollections.get(i)) != GeneratedUnits.fingerprint(allTypeCollections.get(i)))
+                differences.add(itsTypeCollections.get(i).target.name)
+        }
+        return differences
+    }
+}
@@ -4,9 +4,11 @@
    file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.genivi.commonapi.dbus.generator
 
+import java.util.ArrayList
 import java.util.HashMap
 import java.util.LinkedList
 import java.util.List
+import java.util.TreeMap
 import javax.inject.Inject
 import org.eclipse.core.resources.IResource
 import org.eclipse.xtext.generator.IFileSystemAccess
@@ -75,6 +77,23 @@ class FInterfaceDBusStubAdapterGenerator {
         #include <CommonAPI/DBus/DBusDeployment.hpp>
 
         «endInternalCompilation»
+        «IF isStaticDispatch»
+
+            #include <cstring>
+        «ENDIF»
+        «IF isSubscriberSnapshots && fInterface.broadcasts.exists[selective]»
+
+            #include <atomic>
+            #include <memory>
+        «ENDIF»
+        «IF !fInterface.getThrottledAttributes(deploymentAccessor).empty»
+
+            #include <chrono>
+            #include <condition_variable>
+            #include <memory>
+            #include <mutex>
+            #include <thread>
+        «ENDIF»
 
         «fInterface.generateVersionNamespaceBegin»
         «fInterface.model.generateNamespaceBeginDeclaration»
@@ -88,6 +107,9 @@ class FInterfaceDBusStubAdapterGenerator {
             typedef CommonAPI::DBus::DBusStubAdapterHelper< _Stub, _Stubs...> «fInterface.dbusStubAdapterHelperClassName»;
 
             ~«fInterface.dbusStubAdapterClassNameInternal»() {
+                «IF !fInterface.getThrottledAttributes(deploymentAccessor).empty»
+                    stopNotifications();
+                «ENDIF»
                 deactivateManagedInstances();
                 «fInterface.dbusStubAdapterHelperClassName»::deinit();
             }
@@ -162,10 +184,12 @@ class FInterfaceDBusStubAdapterGenerator {
                     return CommonAPI::DBus::DBusStubAdapterHelper<_Stub, _Stubs...>::deinit();
                 }
 
-                virtual bool onInterfaceDBusMessage(const CommonAPI::DBus::DBusMessage& dbusMessage) {
-                    return CommonAPI::DBus::DBusStubAdapterHelper<_Stub, _Stubs...>::onInterfaceDBusMessage(dbusMessage);
-                }
+                «IF !isStaticDispatch»
+                    virtual bool onInterfaceDBusMessage(const CommonAPI::DBus::DBusMessage& dbusMessage) {
+                        return CommonAPI::DBus::DBusStubAdapterHelper<_Stub, _Stubs...>::onInterfaceDBusMessage(dbusMessage);
+                    }
 
+                «ENDIF»
                 virtual bool onInterfaceDBusFreedesktopPropertiesMessage(const CommonAPI::DBus::DBusMessage& dbusMessage) {
                     return CommonAPI::DBus::DBusStubAdapterHelper<_Stub, _Stubs...>::onInterfaceDBusFreedesktopPropertiesMessage(dbusMessage);
                 }
@@ -238,85 +262,49 @@ class FInterfaceDBusStubAdapterGenerator {
                 «fInterface.generateStubAttributeTableInitializer(deploymentAccessor)»
                 «FOR broadcast : fInterface.broadcasts»
                     «IF broadcast.selective»
-                        «broadcast.getStubAdapterClassSubscriberListPropertyName» = std::make_shared<CommonAPI::ClientIdList>();
+                        «IF isSubscriberSnapshots»
+                            «broadcast.storeSubscribersName»(std::make_shared<CommonAPI::ClientIdList>());
+                        «ELSE»
+                            «broadcast.getStubAdapterClassSubscriberListPropertyName» = std::make_shared<CommonAPI::ClientIdList>();
+                        «ENDIF»
                     «ENDIF»
                 «ENDFOR»
                 «fInterface.dbusStubAdapterHelperClassName»::addStubDispatcher({ "getInterfaceVersion", "" }, &get«fInterface.elementName»InterfaceVersionStubDispatcher);
             }
+            «IF isStaticDispatch»
+
+                «fInterface.generateStaticDispatch(deploymentAccessor, methodnumberMap)»
+            «ENDIF»
 
         protected:
             virtual const char* getMethodsDBusIntrospectionXmlData() const {
-                static const std::string introspectionData =
-                    «IF fInterface.base !== null»
-                        std::string(«fInterface.base.getTypeCollectionName(fInterface)»DBusStubAdapterInternal<_Stub, _Stubs...>::getMethodsDBusIntrospectionXmlData()) +
-                    «ELSE»
-                        "<method name=\"getInterfaceVersion\">\n"
-                            "<arg name=\"value\" type=\"uu\" direction=\"out\" />"
-                        "</method>\n"
-                    «ENDIF»
-                    «FOR attribute : fInterface.attributes»
-                        «IF deploymentAccessor.getPropertiesType(attribute.containingInterface) == PropertyAccessor.PropertiesType.freedesktop»
-                            "<property name=\"«attribute.elementName»\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" access=\"read«IF !attribute.readonly»write«ENDIF»\" />\n"
-                        «ELSE»
-                            "<method name=\"«attribute.dbusGetMethodName»\">\n"
-                            "<arg name=\"value\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"out\" />"
-                            "</method>\n"
-                            «IF !attribute.isReadonly»
-                                "<method name=\"«attribute.dbusSetMethodName»\">\n"
-                                "<arg name=\"requestedValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"in\" />\n"
-                                "<arg name=\"setValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"out\" />\n"
-                                "</method>\n"
-                            «ENDIF»
-                            «IF attribute.isObservable»
-                                "<signal name=\"«attribute.dbusSignalName»\">\n"
-                                "<arg name=\"changedValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" />\n"
-                                "</signal>\n"
-                            «ENDIF»
-                        «ENDIF»
+        #ifdef COMMONAPI_DBUS_NO_INTROSPECTION_DATA
+                return "";
+        #else
+                static constexpr const char introspectionData[] =
+                    «FOR itsInterface : fInterface.interfaceHierarchyRootFirst»
+                        «itsInterface.generateIntrospectionXmlData(itsInterface.getHierarchyAccessor(fInterface, deploymentAccessor))»
                     «ENDFOR»
-                    «FOR broadcast : fInterface.broadcasts»
-                        «IF !broadcast.isErrorType(deploymentAccessor)»
-                            «FTypeGenerator::generateComments(broadcast, false)»
-                            "<signal name=\"«broadcast.elementName»\">\n"
-                            «FOR outArg : broadcast.outArgs»
-                                "<arg name=\"«outArg.elementName»\" type=\"«outArg.getTypeDbusSignature(deploymentAccessor)»\" />\n"
-                            «ENDFOR»
-                            "</signal>\n"
-                        «ENDIF»
-                    «ENDFOR»
-                    «FOR method : fInterface.methods»
-                        «FTypeGenerator::generateComments(method, false)»
-                        "<method name=\"«method.elementName»\">\n"
-                        «FOR inArg : method.inArgs»
-                            "<arg name=\"_«inArg.elementName»\" type=\"«inArg.getTypeDbusSignature(deploymentAccessor)»\" direction=\"in\" />\n"
-                        «ENDFOR»
-                        «IF method.hasError»
-                            "<arg name=\"_error\" type=\"«method.dbusErrorSignature(deploymentAccessor)»\" direction=\"out\" />\n"
-                        «ENDIF»
-                        «FOR outArg : method.outArgs»
-                            "<arg name=\"_«outArg.elementName»\" type=\"«outArg.getTypeDbusSignature(deploymentAccessor)»\" direction=\"out\" />\n"
-                        «ENDFOR»
-                        «IF !method.isFireAndForget»
-                            "<annotation name=\"org.freedesktop.DBus.Method.NoReply\" value=\"true\" />\n"
-                        «ENDIF»
-                        "</method>\n"
-                    «ENDFOR»
-                    «IF fInterface.attributes.empty && fInterface.broadcasts.empty && fInterface.methods.empty»
-                        ""
-                    «ENDIF»
                     ;
-                return introspectionData.c_str();
+                return introspectionData;
+        #endif
             }
 
         private:
             «FOR broadcast: fInterface.broadcasts»
                 «IF broadcast.selective»
                     std::mutex «broadcast.className»Mutex_;
+                    «IF isSubscriberSnapshots»
+                        «broadcast.generateSubscriberSnapshotAccess»
+                    «ENDIF»
                 «ENDIF»
             «ENDFOR»
             «FOR managed: fInterface.managedInterfaces»
                 std::set<std::string> «managed.stubManagedSetName»;
             «ENDFOR»
+            «IF !fInterface.getThrottledAttributes(deploymentAccessor).empty»
+                «fInterface.generateNotificationThrottling(deploymentAccessor)»
+            «ENDIF»
         };
 
 
@@ -324,6 +312,23 @@ class FInterfaceDBusStubAdapterGenerator {
             «FTypeGenerator::generateComments(attribute, false)»
             template <typename _Stub, typename... _Stubs>
             void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«attribute.stubAdapterClassFireChangedMethodName»(const «attribute.getTypeName(fInterface, true)»& value) {
+                «IF attribute.getNotificationInterval(deploymentAccessor) !== null»
+                    {
+                        std::lock_guard<std::mutex> itsLock(notificationMutex_);
+                        std::chrono::steady_clock::time_point now = std::chrono::steady_clock::now();
+                        if (now < «attribute.notificationNextName(deploymentAccessor)») {
+                            if («attribute.notificationPendingName») {
+                                *«attribute.notificationPendingName» = value;
+                            } else {
+                                «attribute.notificationPendingName».reset(new «attribute.getTypeName(fInterface, true)»(value));
+                                scheduleNotifications();
+                            }
+                            return;
+                        }
+                        «attribute.notificationNextName(deploymentAccessor)» = now + std::chrono::milliseconds(«attribute.getNotificationInterval(deploymentAccessor)»);
+                        «attribute.notificationPendingName».reset();
+                    }
+                «ENDIF»
                 «attribute.generateFireChangedMethodBody(fInterface, deploymentAccessor)»
             }
 
@@ -363,53 +368,57 @@ class FInterfaceDBusStubAdapterGenerator {
                         );
                     }
                 }
-                template <typename _Stub, typename... _Stubs>
-                void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSendSelectiveMethodName»(«generateSendSelectiveSignatur(broadcast, fInterface, false)») {
-                    std::shared_ptr<CommonAPI::ClientIdList> actualReceiverList = _receivers;
-
-                    if (!_receivers) {
-                        std::lock_guard < std::mutex > itsLock(«broadcast.className»Mutex_);
-                        actualReceiverList = «broadcast.stubAdapterClassSubscriberListPropertyName»;
-                    }
+                «IF isSubscriberSnapshots»
+                    «broadcast.generateSubscriberSnapshotMethods(fInterface)»
+                «ELSE»
+                    template <typename _Stub, typename... _Stubs>
+                    void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSendSelectiveMethodName»(«generateSendSelectiveSignatur(broadcast, fInterface, false)») {
+                        std::shared_ptr<CommonAPI::ClientIdList> actualReceiverList = _receivers;
 
-                    for (auto clientIdIterator = actualReceiverList->cbegin(); clientIdIterator != actualReceiverList->cend(); clientIdIterator++) {
-                        bool found(false);
-                        {
+                        if (!_receivers) {
                             std::lock_guard < std::mutex > itsLock(«broadcast.className»Mutex_);
-                            found = («broadcast.stubAdapterClassSubscriberListPropertyName»->find(*clientIdIterator) != «broadcast.stubAdapterClassSubscriberListPropertyName»->end());
+                            actualReceiverList = «broadcast.stubAdapterClassSubscriberListPropertyName»;
                         }
-                        if (!_receivers || found) {
-                            «broadcast.stubAdapterClassFireSelectiveMethodName»(*clientIdIterator«IF(!broadcast.outArgs.empty)», «ENDIF»«broadcast.outArgs.map["_" + elementName].join(', ')»);
+
+                        for (auto clientIdIterator = actualReceiverList->cbegin(); clientIdIterator != actualReceiverList->cend(); clientIdIterator++) {
+                            bool found(false);
+                            {
+                                std::lock_guard < std::mutex > itsLock(«broadcast.className»Mutex_);
+                                found = («broadcast.stubAdapterClassSubscriberListPropertyName»->find(*clientIdIterator) != «broadcast.stubAdapterClassSubscriberListPropertyName»->end());
+                            }
+                            if (!_receivers || found) {
+                                «broadcast.stubAdapterClassFireSelectiveMethodName»(*clientIdIterator«IF(!broadcast.outArgs.empty)», «ENDIF»«broadcast.outArgs.map["_" + elementName].join(', ')»);
+                            }
                         }
                     }
-                }
-                template <typename _Stub, typename... _Stubs>
-                void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.subscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client, bool &_success) {
-                    bool ok = «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionRequestedMethodName»(_client);
-                    if (ok) {
+                    template <typename _Stub, typename... _Stubs>
+                    void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.subscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client, bool &_success) {
+                        bool ok = «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionRequestedMethodName»(_client);
+                        if (ok) {
+                            {
+                                std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
+                                «broadcast.stubAdapterClassSubscriberListPropertyName»->insert(_client);
+                            }
+                            «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::SUBSCRIBED);
+                            _success = true;
+                        } else {
+                            _success = false;
+                        }
+                    }
+                    template <typename _Stub, typename... _Stubs>
+                    void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.unsubscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client) {
+                        «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::UNSUBSCRIBED);
                         {
                             std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
-                            «broadcast.stubAdapterClassSubscriberListPropertyName»->insert(_client);
+                            «broadcast.stubAdapterClassSubscriberListPropertyName»->erase(_client);
                         }
-                        «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::SUBSCRIBED);
-                        _success = true;
-                    } else {
-                        _success = false;
                     }
-                }
-                template <typename _Stub, typename... _Stubs>
-                void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.unsubscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client) {
-                    «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::UNSUBSCRIBED);
-                    {
+                    template <typename _Stub, typename... _Stubs>
+                    std::shared_ptr<CommonAPI::ClientIdList> const «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSubscribersMethodName»() {
                         std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
-                        «broadcast.stubAdapterClassSubscriberListPropertyName»->erase(_client);
+                        return std::make_shared<CommonAPI::ClientIdList>(*«broadcast.stubAdapterClassSubscriberListPropertyName»);
                     }
-                }
-                template <typename _Stub, typename... _Stubs>
-                std::shared_ptr<CommonAPI::ClientIdList> const «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSubscribersMethodName»() {
-                    std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
-                    return std::make_shared<CommonAPI::ClientIdList>(*«broadcast.stubAdapterClassSubscriberListPropertyName»);
-                }
+                «ENDIF»
             «ELSE»
                 «IF !broadcast.isErrorType(deploymentAccessor)»
                     template <typename _Stub, typename... _Stubs>
@@ -701,6 +710,387 @@ class FInterfaceDBusStubAdapterGenerator {
         «fInterface.generateVersionNamespaceEnd»
     '''
 
+    /**
+     * The interface and all its base interfaces, the root of the hierarchy first.
+     */
+    def private getInterfaceHierarchyRootFirst(FInterface fInterface) {
+        val hierarchy = new LinkedList<FInterface>()
+        var FInterface itsInterface = fInterface
+        while (itsInterface !== null && !hierarchy.contains(itsInterface)) {
+            hierarchy.addFirst(itsInterface)
+            itsInterface = itsInterface.base
+        }
+        return hierarchy
+    }
+
+    /**
+     * The accessor for the deployment of an interface of the hierarchy. The members of
+     * a base interface are deployed by the deployment of the base interface; a base
+     * interface without deployment uses the default values.
+     */
+    def private PropertyAccessor getHierarchyAccessor(FInterface itsInterface, FInterface fInterface, PropertyAccessor deploymentAccessor) {
+        if (itsInterface === fInterface) {
+            return deploymentAccessor
+        }
+        return getDBusAccessor(itsInterface) ?: new PropertyAccessor()
+    }
+
+    /**
+     * The introspection data of the own members of an interface as string literals,
+     * which the compiler concatenates into a single constant array.
+     */
+    def private generateIntrospectionXmlData(FInterface fInterface, PropertyAccessor deploymentAccessor) '''
+        «IF fInterface.base === null»
+            "<method name=\"getInterfaceVersion\">\n"
+                "<arg name=\"value\" type=\"uu\" direction=\"out\" />"
+            "</method>\n"
+        «ENDIF»
+        «FOR attribute : fInterface.attributes»
+            «IF deploymentAccessor.getPropertiesType(attribute.containingInterface) == PropertyAccessor.PropertiesType.freedesktop»
+                "<property name=\"«attribute.elementName»\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" access=\"read«IF !attribute.readonly»write«ENDIF»\" />\n"
+            «ELSE»
+                "<method name=\"«attribute.dbusGetMethodName»\">\n"
+                "<arg name=\"value\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"out\" />"
+                "</method>\n"
+                «IF !attribute.isReadonly»
+                    "<method name=\"«attribute.dbusSetMethodName»\">\n"
+                    "<arg name=\"requestedValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"in\" />\n"
+                    "<arg name=\"setValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" direction=\"out\" />\n"
+                    "</method>\n"
+                «ENDIF»
+                «IF attribute.isObservable»
+                    "<signal name=\"«attribute.dbusSignalName»\">\n"
+                    "<arg name=\"changedValue\" type=\"«attribute.dbusSignature(deploymentAccessor)»\" />\n"
+                    "</signal>\n"
+                «ENDIF»
+            «ENDIF»
+        «ENDFOR»
+        «FOR broadcast : fInterface.broadcasts»
+            «IF !broadcast.isErrorType(deploymentAccessor)»
+                «FTypeGenerator::generateComments(broadcast, false)»
+                "<signal name=\"«broadcast.elementName»\">\n"
+                «FOR outArg : broadcast.outArgs»
+                    "<arg name=\"«outArg.elementName»\" type=\"«outArg.getTypeDbusSignature(deploymentAccessor)»\" />\n"
+                «ENDFOR»
+                "</signal>\n"
+            «ENDIF»
+        «ENDFOR»
+        «FOR method : fInterface.methods»
+            «FTypeGenerator::generateComments(method, false)»
+            "<method name=\"«method.elementName»\">\n"
+            «FOR inArg : method.inArgs»
+                "<arg name=\"_«inArg.elementName»\" type=\"«inArg.getTypeDbusSignature(deploymentAccessor)»\" direction=\"in\" />\n"
+            «ENDFOR»
+            «IF method.hasError»
+                "<arg name=\"_error\" type=\"«method.dbusErrorSignature(deploymentAccessor)»\" direction=\"out\" />\n"
+            «ENDIF»
+            «FOR outArg : method.outArgs»
+                "<arg name=\"_«outArg.elementName»\" type=\"«outArg.getTypeDbusSignature(deploymentAccessor)»\" direction=\"out\" />\n"
+            «ENDFOR»
+            «IF !method.isFireAndForget»
+                "<annotation name=\"org.freedesktop.DBus.Method.NoReply\" value=\"true\" />\n"
+            «ENDIF»
+            "</method>\n"
+        «ENDFOR»
+    '''
+
+    /**
+     * The observable attributes whose change notifications are rate limited or, for
+     * freedesktop properties, coalesced.
+     */
+    def private getThrottledAttributes(FInterface fInterface, PropertyAccessor deploymentAccessor) {
+        return fInterface.attributes.filter[getNotificationInterval(deploymentAccessor) !== null].toList
+    }
+
+    /**
+     * The minimum time in milliseconds between two notifications of an attribute, or null if
+     * its notifications are sent immediately. Attributes without an own interval share the
+     * coalescing window of a freedesktop interface.
+     */
+    def private Integer getNotificationInterval(FAttribute attribute, PropertyAccessor deploymentAccessor) {
+        if (!attribute.isObservable)
+            return null
+        val Integer interval = deploymentAccessor.getDBusNotificationInterval(attribute)
+        if (interval !== null && interval > 0)
+            return interval
+        if (attribute.isCoalesced(deploymentAccessor))
+            return deploymentAccessor.getDBusNotificationInterval(attribute.containingInterface)
+        return null
+    }
+
+    def private boolean isCoalesced(FAttribute attribute, PropertyAccessor deploymentAccessor) {
+        val Integer interval = deploymentAccessor.getDBusNotificationInterval(attribute)
+        if (interval !== null && interval > 0)
+            return false
+        if (deploymentAccessor.getPropertiesType(attribute.containingInterface) != PropertyAccessor.PropertiesType.freedesktop)
+            return false
+        val Integer window = deploymentAccessor.getDBusNotificationInterval(attribute.containingInterface)
+        return window !== null && window > 0
+    }
+
+    def private notificationPendingName(FAttribute attribute) {
+        attribute.elementName + "NotificationPending_"
+    }
+
+    def private notificationNextName(FAttribute attribute, PropertyAccessor deploymentAccessor) {
+        if (attribute.isCoalesced(deploymentAccessor))
+            return "propertiesChangedNotificationNext_"
+        return attribute.elementName + "NotificationNext_"
+    }
+
+    def private notificationDueName(String nextName) {
+        nextName.replace("Next_", "Due")
+    }
+
+    /**
+     * A notification that arrives before the interval of its attribute has passed replaces
+     * the pending value of the attribute. A thread of the stub adapter sends the pending
+     * values when their interval has passed: all coalesced properties at the end of their
+     * common window, each in its own PropertiesChanged signal. The notifications are sent
+     * outside the critical section. Pending values are discarded when the stub adapter
+     * stops the thread on destruction.
+     */
+    def private generateNotificationThrottling(FInterface fInterface, PropertyAccessor deploymentAccessor) '''
+        «val throttled = fInterface.getThrottledAttributes(deploymentAccessor)»
+        «val nextNames = throttled.map[notificationNextName(deploymentAccessor)].toSet.sort»
+        void scheduleNotifications() {
+            if (notificationStopped_) {
+                return;
+            }
+            if (!notificationThread_.joinable()) {
+                notificationThread_ = std::thread([this]() { runNotifications(); });
+            } else {
+                notificationCondition_.notify_one();
+            }
+        }
+
+        void stopNotifications() {
+            {
+                std::lock_guard<std::mutex> itsLock(notificationMutex_);
+                notificationStopped_ = true;
+            }
+            notificationCondition_.notify_one();
+            if (notificationThread_.joinable()) {
+                notificationThread_.join();
+            }
+        }
+
+        void runNotifications() {
+            std::unique_lock<std::mutex> itsLock(notificationMutex_);
+            while (!notificationStopped_) {
+                std::chrono::steady_clock::time_point now = std::chrono::steady_clock::now();
+                «FOR nextName : nextNames»
+                    const bool «nextName.notificationDueName» = (now >= «nextName»);
+                «ENDFOR»
+                bool isSending = false;
+                «FOR attribute : throttled»
+                    std::unique_ptr<«attribute.getTypeName(fInterface, true)»> «attribute.elementName»Value;
+                    if («attribute.notificationNextName(deploymentAccessor).notificationDueName» && «attribute.notificationPendingName») {
+                        «attribute.elementName»Value = std::move(«attribute.notificationPendingName»);
+                        «attribute.notificationNextName(deploymentAccessor)» = now + std::chrono::milliseconds(«attribute.getNotificationInterval(deploymentAccessor)»);
+                        isSending = true;
+                    }
+                «ENDFOR»
+                if (isSending) {
+                    itsLock.unlock();
+                    «FOR attribute : throttled»
+                        if («attribute.elementName»Value) {
+                            const «attribute.getTypeName(fInterface, true)»& value = *«attribute.elementName»Value;
+                            «attribute.generateFireChangedMethodBody(fInterface, deploymentAccessor)»
+                        }
+                    «ENDFOR»
+                    itsLock.lock();
+                    continue;
+                }
+                std::chrono::steady_clock::time_point due = std::chrono::steady_clock::time_point::max();
+                «FOR attribute : throttled»
+                    if («attribute.notificationPendingName» && «attribute.notificationNextName(deploymentAccessor)» < due) {
+                        due = «attribute.notificationNextName(deploymentAccessor)»;
+                    }
+                «ENDFOR»
+                if (due == std::chrono::steady_clock::time_point::max()) {
+                    notificationCondition_.wait(itsLock);
+                } else {
+                    notificationCondition_.wait_until(itsLock, due);
+                }
+            }
+        }
+
+        std::mutex notificationMutex_;
+        std::condition_variable notificationCondition_;
+        std::thread notificationThread_;
+        bool notificationStopped_ = false;
+        «FOR nextName : nextNames»
+            std::chrono::steady_clock::time_point «nextName»;
+        «ENDFOR»
+        «FOR attribute : throttled»
+            std::unique_ptr<«attribute.getTypeName(fInterface, true)»> «attribute.notificationPendingName»;
+        «ENDFOR»
+    '''
+
+    def private boolean isSubscriberSnapshots() {
+        return FPreferencesDBus::getInstance.getPreference(PreferenceConstantsDBus::P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS, "false").equals("true")
+    }
+
+    def private String loadSubscribersName(FBroadcast broadcast) {
+        return "load" + broadcast.className.toFirstUpper + "Subscribers"
+    }
+
+    def private String storeSubscribersName(FBroadcast broadcast) {
+        return "store" + broadcast.className.toFirstUpper + "Subscribers"
+    }
+
+    /**
+     * Load and publish the snapshot of the subscribers. C++20 provides
+     * std::atomic<std::shared_ptr>, which replaces the atomic free functions for
+     * shared_ptr, deprecated in C++20. The subscriber list of the Core stub adapter
+     * keeps the latest snapshot, too. Neither is lock-free in the common standard
+     * libraries, but they only guard the exchange of the pointer.
+     */
+    def private generateSubscriberSnapshotAccess(FBroadcast broadcast) '''
+        #if __cplusplus >= 202002L && defined(__cpp_lib_atomic_shared_ptr)
+        std::atomic<std::shared_ptr<CommonAPI::ClientIdList>> «broadcast.className»Subscribers_;
+        std::shared_ptr<CommonAPI::ClientIdList> «broadcast.loadSubscribersName»() const {
+            return «broadcast.className»Subscribers_.load();
+        }
+        void «broadcast.storeSubscribersName»(std::shared_ptr<CommonAPI::ClientIdList> _subscribers) {
+            «broadcast.stubAdapterClassSubscriberListPropertyName» = _subscribers;
+            «broadcast.className»Subscribers_.store(std::move(_subscribers));
+        }
+        #else
+        std::shared_ptr<CommonAPI::ClientIdList> «broadcast.loadSubscribersName»() const {
+            return std::atomic_load(&«broadcast.stubAdapterClassSubscriberListPropertyName»);
+        }
+        void «broadcast.storeSubscribersName»(std::shared_ptr<CommonAPI::ClientIdList> _subscribers) {
+            std::atomic_store(&«broadcast.stubAdapterClassSubscriberListPropertyName», std::move(_subscribers));
+        }
+        #endif
+    '''
+
+    /**
+     * The subscribers of a selective broadcast as copy-on-write snapshots: subscribe and
+     * unsubscribe copy the current set, change the copy and publish it atomically, so
+     * sending reads the current snapshot without taking the mutex, which only serializes
+     * the changes of the subscribers. The signals are sent outside any critical section.
+     */
+    def private generateSubscriberSnapshotMethods(FBroadcast broadcast, FInterface fInterface) '''
+        template <typename _Stub, typename... _Stubs>
+        void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSendSelectiveMethodName»(«generateSendSelectiveSignatur(broadcast, fInterface, false)») {
+            std::shared_ptr<CommonAPI::ClientIdList> itsSubscribers = «broadcast.loadSubscribersName»();
+            const std::shared_ptr<CommonAPI::ClientIdList> &actualReceiverList = (_receivers ? _receivers : itsSubscribers);
+
+            for (auto clientIdIterator = actualReceiverList->cbegin(); clientIdIterator != actualReceiverList->cend(); clientIdIterator++) {
+                if (!_receivers || itsSubscribers->find(*clientIdIterator) != itsSubscribers->end()) {
+                    «broadcast.stubAdapterClassFireSelectiveMethodName»(*clientIdIterator«IF(!broadcast.outArgs.empty)», «ENDIF»«broadcast.outArgs.map["_" + elementName].join(', ')»);
+                }
+            }
+        }
+        template <typename _Stub, typename... _Stubs>
+        void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.subscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client, bool &_success) {
+            bool ok = «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionRequestedMethodName»(_client);
+            if (ok) {
+                {
+                    std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
+                    auto itsSubscribers = std::make_shared<CommonAPI::ClientIdList>(*«broadcast.loadSubscribersName»());
+                    itsSubscribers->insert(_client);
+                    «broadcast.storeSubscribersName»(itsSubscribers);
+                }
+                «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::SUBSCRIBED);
+                _success = true;
+            } else {
+                _success = false;
+            }
+        }
+        template <typename _Stub, typename... _Stubs>
+        void «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.unsubscribeSelectiveMethodName»(const std::shared_ptr<CommonAPI::ClientId> _client) {
+            «fInterface.dbusStubAdapterHelperClassName»::stub_->«broadcast.subscriptionChangedMethodName»(_client, CommonAPI::SelectiveBroadcastSubscriptionEvent::UNSUBSCRIBED);
+            {
+                std::lock_guard<std::mutex> itsLock(«broadcast.className»Mutex_);
+                auto itsSubscribers = std::make_shared<CommonAPI::ClientIdList>(*«broadcast.loadSubscribersName»());
+                itsSubscribers->erase(_client);
+                «broadcast.storeSubscribersName»(itsSubscribers);
+            }
+        }
+        template <typename _Stub, typename... _Stubs>
+        std::shared_ptr<CommonAPI::ClientIdList> const «fInterface.dbusStubAdapterClassNameInternal»<_Stub, _Stubs...>::«broadcast.stubAdapterClassSubscribersMethodName»() {
+            return std::make_shared<CommonAPI::ClientIdList>(*«broadcast.loadSubscribersName»());
+        }
+    '''
+
+    def private boolean isStaticDispatch() {
+        return FPreferencesDBus::getInstance.getPreference(PreferenceConstantsDBus::P_GENERATE_STATIC_DISPATCH_DBUS, "false").equals("true")
+    }
+
+    /**
+     * Dispatch the messages for the members of the interface without the lookup in the
+     * string keyed dispatcher table of the DBusStubAdapterHelper: switch on the length of
+     * the member name, then compare the name and the signature. Messages for all other
+     * members, e.g. those of base interfaces, are still dispatched by the table.
+     */
+    def private generateStaticDispatch(FInterface fInterface, PropertyAccessor deploymentAccessor, HashMap<FMethod, Integer> methodnumberMap) '''
+        «val entries = fInterface.getStaticDispatchEntries(deploymentAccessor, methodnumberMap)»
+        virtual bool onInterfaceDBusMessage(const CommonAPI::DBus::DBusMessage& dbusMessage) {
+            const char* itsMember = dbusMessage.getMember();
+            const char* itsSignature = dbusMessage.getSignature();
+            if (itsMember != NULL && itsSignature != NULL) {
+                switch (std::strlen(itsMember)) {
+                «FOR itsLength : entries.keySet»
+                    case «itsLength»:
+                        «FOR entry : entries.get(itsLength)»
+                            if (std::memcmp(itsMember, "«entry.get(0)»", «itsLength») == 0 && std::strcmp(itsSignature, "«entry.get(1)»") == 0) {
+                                return «entry.get(2)».dispatchDBusMessage(dbusMessage,
+                                    «fInterface.dbusStubAdapterHelperClassName»::stub_,
+                                    «fInterface.dbusStubAdapterHelperClassName»::remoteEventHandler_,
+                                    «fInterface.dbusStubAdapterHelperClassName»::connection_);
+                            }
+                        «ENDFOR»
+                        break;
+                «ENDFOR»
+                default:
+                    break;
+                }
+            }
+            return CommonAPI::DBus::DBusStubAdapterHelper<_Stub, _Stubs...>::onInterfaceDBusMessage(dbusMessage);
+        }
+    '''
+
+    /**
+     * The members that are added to the dispatcher table by the constructor of the stub
+     * adapter as (member name, signature, dispatcher variable), grouped by the length of
+     * the member name.
+     */
+    def private getStaticDispatchEntries(FInterface fInterface, PropertyAccessor deploymentAccessor, HashMap<FMethod, Integer> methodnumberMap) {
+        val entries = new TreeMap<Integer, List<List<String>>>()
+        val List<List<String>> members = new ArrayList<List<String>>()
+        if (deploymentAccessor.getPropertiesType(fInterface) != PropertyAccessor.PropertiesType.freedesktop) {
+            for (attribute : fInterface.attributes) {
+                members.add(#[attribute.dbusGetMethodName, "", attribute.dbusGetStubDispatcherVariable])
+                if (!attribute.isReadonly) {
+                    members.add(#[attribute.dbusSetMethodName, attribute.dbusSignature(deploymentAccessor), attribute.dbusSetStubDispatcherVariable])
+                }
+            }
+        }
+        for (method : fInterface.methods) {
+            val itsNumber = methodnumberMap.get(method)
+            members.add(#[method.elementName, method.dbusInSignature(deploymentAccessor),
+                method.dbusStubDispatcherVariable + (if (itsNumber === null || itsNumber == 0) "" else itsNumber.toString)])
+        }
+        for (broadcast : fInterface.broadcasts.filter[selective]) {
+            members.add(#[broadcast.subscribeSelectiveMethodName, "", broadcast.dbusStubDispatcherVariableSubscribe])
+            members.add(#[broadcast.unsubscribeSelectiveMethodName, "", broadcast.dbusStubDispatcherVariableUnsubscribe])
+        }
+        members.add(#["getInterfaceVersion", "", "get" + fInterface.elementName + "InterfaceVersionStubDispatcher"])
+        for (member : members) {
+            var itsEntries = entries.get(member.get(0).length)
+            if (itsEntries === null) {
+                itsEntries = new ArrayList<List<String>>()
+                entries.put(member.get(0).length, itsEntries)
+            }
+            itsEntries.add(member)
+        }
+        return entries
+    }
+
     def dbusDispatcherTableEntry(FInterface fInterface, String methodName, String dbusSignature, String memberFunctionName) '''
         «fInterface.dbusStubAdapterHelperClassName»::addStubDispatcher({ "«methodName»", "«dbusSignature»" }, &«memberFunctionName»);
     '''
@@ -5,13 +5,21 @@
 package org.genivi.commonapi.dbus.generator
 
 import java.io.File
+import java.util.ArrayList
 import java.util.HashSet
+import java.io.IOException
+import java.util.IdentityHashMap
+import java.util.LinkedHashMap
+import java.util.LinkedHashSet
 import java.util.LinkedList
 import java.util.List
 import java.util.Map
 import java.util.Set
+import java.util.concurrent.CompletableFuture
 import javax.inject.Inject
 import org.eclipse.core.resources.IResource
+import org.eclipse.emf.common.util.URI
+import org.eclipse.emf.ecore.EObject
 import org.eclipse.emf.ecore.resource.Resource
 import org.eclipse.xtext.generator.IFileSystemAccess
 import org.eclipse.xtext.generator.IGenerator
@@ -21,9 +29,7 @@ import org.franca.core.franca.FModel
 import org.franca.core.franca.FTypeCollection
 import org.franca.deploymodel.core.FDeployedInterface
 import org.franca.deploymodel.core.FDeployedTypeCollection
-import org.franca.deploymodel.dsl.fDeploy.FDInterface
 import org.franca.deploymodel.dsl.fDeploy.FDModel
-import org.franca.deploymodel.dsl.fDeploy.FDTypes
 import org.franca.deploymodel.dsl.fDeploy.FDeployFactory
 import org.genivi.commonapi.core.generator.FDeployManager
 import org.genivi.commonapi.core.generator.FrancaGeneratorExtensions
@@ -33,23 +39,33 @@ import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus
 import org.franca.deploymodel.dsl.fDeploy.FDExtensionRoot
 
 class FrancaDBusGenerator implements IGenerator {
+    /**
+     * If this system property is true, the generator checks that merging only the
+     * matching Core deployments gives the same DBus deployments as merging all of them.
+     */
+    public static val CHECK_MERGE_PROPERTY = "org.genivi.commonapi.dbus.checkMerge"
+
 	@Inject extension FrancaGeneratorExtensions
 	@Inject extension FrancaDBusGeneratorExtensions
 	@Inject extension FInterfaceDBusProxyGenerator
 	@Inject extension FInterfaceDBusStubAdapterGenerator
 	@Inject extension FInterfaceDBusDeploymentGenerator
+	@Inject DeploymentMerge deploymentMerge
 
     //@Inject FrancaPersistenceManager francaPersistenceManager
 	@Inject FDeployManager fDeployManager
 
     override doGenerate(Resource input, IFileSystemAccess fileSystemAccess) {
+        generatedOutputs_ = new ArrayList<CompletableFuture<Set<String>>>()
+        generatedUnits_ = new ArrayList<String>()
+        generatedInputs_ = new HashSet<String>()
+        outputStore_ = null
         if (!input.URI.fileExtension.equals(FrancaPersistenceManager.FRANCA_FILE_EXTENSION) &&
             !input.URI.fileExtension.equals(FDeployManager.fileExtension)) {
                 return
         }
 
-        var List<FDInterface> deployedInterfaces = new LinkedList<FDInterface>()
-        var List<FDTypes> deployedTypeCollections = new LinkedList<FDTypes>()
+        val deployed = new DeploymentIndex()
         var List<FDExtensionRoot> deployedProviders = new LinkedList<FDExtensionRoot>()
 
         var IResource res = null
@@ -60,75 +76,151 @@ class FrancaDBusGenerator implements IGenerator {
         val String CORE_SPECIFICATION_NAME = "org.genivi.commonapi.core.deployment"
         val String DBUS_SPECIFICATION_NAME = "org.genivi.commonapi.dbus.deployment"
 
-        var rootModel = fDeployManager.loadModel(input.URI, input.URI)
+        // Models that are already loaded, e.g. by the model cache of the command line
+        // tool, are copied instead of being loaded again
+        var EObject rootModel = null
+        var Map<String, FModel> models = null
+        var Map<String, FDModel> deployments = null
+        modelCopy_ = null
+        val itsLoading = GenerationProfile.start("deployment.load", input.URI.toString)
+        try {
+            if (reuseLoadedModels_ && input.resourceSet !== null) {
+                modelCopy_ = new ModelCopy(input)
+                rootModel = modelCopy_.root
+                models = modelCopy_.models
+                deployments = modelCopy_.deployments
+            } else {
+                rootModel = fDeployManager.loadModel(input.URI, input.URI)
+                models = fDeployManager.fidlModels
+                deployments = fDeployManager.deploymentModels
+            }
+        } finally {
+            itsLoading.close
+        }
 
         generatedFiles_ = new HashSet<String>()
+        accessors_ = new IdentityHashMap<FTypeCollection, PropertyAccessor>()
+        dependencies_ = new ModelDependencies()
+        fingerprints_ = new IdentityHashMap<EObject, String>()
+        runUnits_ = if (units_ !== null) units_ else new GeneratedUnits()
 
         withDependencies_ = FPreferencesDBus::instance.getPreference(
             PreferenceConstantsDBus::P_GENERATE_DEPENDENCIES_DBUS, "true"
         ).equals("true")
 
-        var models = fDeployManager.fidlModels
-        var deployments = fDeployManager.deploymentModels
-
         if (rootModel instanceof FDModel) {
             deployments.put(input.URI.toString, rootModel)
         } else if (rootModel instanceof FModel) {
             models.put(input.URI.toString, rootModel)
         }
+        for (itsInput : models.keySet + deployments.keySet) {
+            val itsURI = URI.createURI(itsInput)
+            if (itsURI.isFile) {
+                generatedInputs_.add(new File(itsURI.toFileString).absoluteFile.toPath.normalize.toString)
+            }
+        }
+
+        val closure = new HashSet<String>(models.keySet)
+        closure.addAll(deployments.keySet)
+        // a shard generates only part of the files
+        var String itsVersion = String.valueOf(getDBusVersion())
+        if (runUnits_.shard !== null) {
+            itsVersion = itsVersion + " shard " + runUnits_.shard.shard + "/" + runUnits_.shard.count
+        }
 
-        var allCoreInterfaces = new LinkedList<FDInterface>()
-        var allCoreTypeCollections = new LinkedList<FDTypes>()
+        // In incremental mode, skip the model if neither it nor any of its imports changed
+        var GenerationManifest manifest = null
+        var String digest = null
+        val IFileSystemAccess access = fileSystemAccess
+        if (FPreferencesDBus::instance.getPreference(
+            PreferenceConstantsDBus::P_GENERATE_INCREMENTAL_DBUS, "false").equals("true")) {
+            manifest = GenerationManifest.getInstance(FPreferencesDBus::instance.getPreference(
+                PreferenceConstantsDBus::P_OUTPUT_DEFAULT_DBUS, PreferenceConstantsDBus::DEFAULT_OUTPUT))
+            digest = manifest.computeDigest(closure, itsVersion,
+                FPreferencesDBus::instance.preferences)
+            if (manifest.isUpToDate(input.URI.toString, digest)) {
+                generatedOutputs_.add(CompletableFuture.completedFuture(
+                    new HashSet<String>(manifest.getOutputs(input.URI.toString)) as Set<String>))
+                fDeployManager.clearFidlModels
+                fDeployManager.clearDeploymentModels
+                return
+            }
+        }
+
+        // With an output store, restore the files of a generation of the same models
+        // with the same settings instead of generating them
+        var String storeKey = null
+        val itsStoreDirectory = FPreferencesDBus::instance.getPreference(
+            PreferenceConstantsDBus::P_OUTPUT_STORE_DBUS, "")
+        if (!itsStoreDirectory.isEmpty) {
+            outputStore_ = OutputStore.getInstance(itsStoreDirectory)
+            storeKey = outputStore_.computeKey(input.URI.toString, closure, itsVersion,
+                FPreferencesDBus::instance.preferences)
+            val itsEntry = outputStore_.getEntry(storeKey)
+            val itsContents = if (itsEntry !== null) outputStore_.getContents(itsEntry)
+            if (itsContents !== null) {
+                val itsAccess = new RecordingFileSystemAccess(access)
+                for (i : 0 ..< itsEntry.size) {
+                    itsAccess.generateFile(itsEntry.get(i).fileName, itsEntry.get(i).outputConfiguration,
+                        itsContents.get(i))
+                }
+                generatedOutputs_.add(CompletableFuture.completedFuture(itsAccess.files))
+                if (manifest !== null) {
+                    manifest.update(input.URI.toString, digest, generatedFiles)
+                    manifest.save
+                }
+                fDeployManager.clearFidlModels
+                fDeployManager.clearDeploymentModels
+                return
+            }
+        }
+
+        val itsMerge = GenerationProfile.start("deployment.merge", input.URI.toString)
+
+        // Index the Core deployments by their target
+        val allCore = new DeploymentIndex()
         for (itsEntry : deployments.entrySet) {
             val itsDeployment = itsEntry.value
 
             // Get Core deployments
-            val itsCoreInterfaces = getFDInterfaces(itsDeployment, CORE_SPECIFICATION_TYPE)
-            val itsCoreTypeCollections = getFDTypesList(itsDeployment, CORE_SPECIFICATION_TYPE)
-            
-            allCoreInterfaces.addAll(itsCoreInterfaces)
-            allCoreTypeCollections.addAll(itsCoreTypeCollections)
+            allCore.addInterfaces(getFDInterfaces(itsDeployment, CORE_SPECIFICATION_TYPE))
+            allCore.addTypeCollections(getFDTypesList(itsDeployment, CORE_SPECIFICATION_TYPE))
         }
 
         // Check whether there do exist models without deployment. If yes, create deployment for them.
-        var missingCoreInterfaces = new LinkedList<FDInterface>()
-        var missingCoreTypeCollections = new LinkedList<FDTypes>()
-        val itsCoreSpecification = fDeployManager.getDeploymentSpecification(CORE_SPECIFICATION_NAME)
+        val itsCoreSpecification = getDeploymentSpecification(CORE_SPECIFICATION_NAME)
         if (itsCoreSpecification !== null) {
             for (itsEntry : models.entrySet) {
                 val itsModel = itsEntry.value
  
                 if (itsModel !== null) {
                     for (i : itsModel.interfaces) {
-                        if (!i.isDeployed(allCoreInterfaces)) {
+                        if (!allCore.hasInterfaceDeployment(i)) {
                             val itsNewDeployment = FDeployFactory.eINSTANCE.createFDInterface()
                             itsNewDeployment.target = i
                             itsNewDeployment.spec = itsCoreSpecification
                         
-                            missingCoreInterfaces.add(itsNewDeployment)
+                            allCore.addInterface(itsNewDeployment)
                         }
                     }
 
                     for (i : itsModel.typeCollections) {
-                        if (!i.isDeployed(allCoreTypeCollections)) {
+                        if (!allCore.hasTypeCollectionDeployment(i)) {
                             val itsNewDeployment = FDeployFactory.eINSTANCE.createFDTypes()
                             itsNewDeployment.target = i
                             itsNewDeployment.spec = itsCoreSpecification
                         
-                            missingCoreTypeCollections.add(itsNewDeployment)
+                            allCore.addTypeCollection(itsNewDeployment)
                         }
                     }
                 }
             }
         }
-
-        allCoreInterfaces.addAll(missingCoreInterfaces)
-        allCoreTypeCollections.addAll(missingCoreTypeCollections)
         
         // Finally check/create/merge the DBus deployment
-        var itsDBusSpecification = fDeployManager.getDeploymentSpecification(DBUS_SPECIFICATION_NAME)
+        var itsDBusSpecification = getDeploymentSpecification(DBUS_SPECIFICATION_NAME)
         if (itsDBusSpecification === null)
-            itsDBusSpecification = fDeployManager.getDeploymentSpecification(CORE_SPECIFICATION_NAME)
+            itsDBusSpecification = getDeploymentSpecification(CORE_SPECIFICATION_NAME)
         if (itsDBusSpecification !== null) {
             for (itsEntry : deployments.entrySet) {
                 val itsDeployment = itsEntry.value
@@ -137,89 +229,161 @@ class FrancaDBusGenerator implements IGenerator {
                 val itsDBusInterfaces = getFDInterfaces(itsDeployment, DBUS_SPECIFICATION_TYPE)
                 val itsDBusTypeCollections = getFDTypesList(itsDeployment, DBUS_SPECIFICATION_TYPE)
                 val itsDBusProviders = getFDProviders(itsDeployment, DBUS_SPECIFICATION_TYPE)
+                val itsDBus = new DeploymentIndex()
+                itsDBus.addInterfaces(itsDBusInterfaces)
+                itsDBus.addTypeCollections(itsDBusTypeCollections)
     
                 // Create DBus deployments for interfaces/type collections without
                 if (rootModel instanceof FDModel) {
                     for (m : models.entrySet) {
                         for (i : m.value.interfaces) {
-                            if (!i.isDeployed(itsDBusInterfaces) && !i.isDeployed(deployedInterfaces)) {
+                            if (!itsDBus.hasInterfaceDeployment(i) && !deployed.hasInterfaceDeployment(i)) {
                                 val itsNewDeployment = FDeployFactory.eINSTANCE.createFDInterface()
                                 itsNewDeployment.target = i
                                 itsNewDeployment.spec = itsDBusSpecification
                                 
                                 rootModel.deployments.add(itsNewDeployment)
                                 itsDBusInterfaces.add(itsNewDeployment)
+                                itsDBus.addInterface(itsNewDeployment)
                             }
                         }
                         for (i : m.value.typeCollections) {
-                            if (!i.isDeployed(itsDBusTypeCollections) && !i.isDeployed(deployedTypeCollections)) {
+                            if (!itsDBus.hasTypeCollectionDeployment(i) && !deployed.hasTypeCollectionDeployment(i)) {
                                 val itsNewDeployment = FDeployFactory.eINSTANCE.createFDTypes()
                                 itsNewDeployment.target = i
                                 itsNewDeployment.spec = itsDBusSpecification
                                 
                                 rootModel.deployments.add(itsNewDeployment)
                                 itsDBusTypeCollections.add(itsNewDeployment)
+                                itsDBus.addTypeCollection(itsNewDeployment)
                             }
                         }
                     }
                 }
                 
-                // Merge Core deployments for interfaces to their DBus deployments
-                for (itsDBusDeployment : itsDBusInterfaces) {
-                    for (itsCoreDeployment : allCoreInterfaces)
-                        mergeDeployments(itsCoreDeployment, itsDBusDeployment)
-                    for (itsCoreDeployment : allCoreTypeCollections)
-                        mergeDeployments(itsCoreDeployment, itsDBusDeployment)
+                // Merge Core deployments for interfaces and type collections to their DBus
+                // deployments: those of the same target and of the elements it uses
+                if (Boolean.getBoolean(CHECK_MERGE_PROPERTY)) {
+                    val differences = deploymentMerge.check(allCore, dependencies_,
+                        itsDBusInterfaces, itsDBusTypeCollections)
+                    if (!differences.empty) {
+                        throw new IllegalStateException("Merging the matching Core deployments differs from merging all of them for "
+                            + differences.join(", "))
+                    }
                 }
-                
-                // Merge Core deployments for type collections to their DBus deployments
-                for (itsDBusDeployment : itsDBusTypeCollections)
-                    for (itsCoreDeployment : allCoreTypeCollections)
-                        mergeDeploymentsExt(itsCoreDeployment, itsDBusDeployment)
+                deploymentMerge.merge(allCore, dependencies_, itsDBusInterfaces, itsDBusTypeCollections)
     
-                deployedInterfaces.addAll(itsDBusInterfaces)
-                deployedTypeCollections.addAll(itsDBusTypeCollections)
+                deployed.addInterfaces(itsDBusInterfaces)
+                deployed.addTypeCollections(itsDBusTypeCollections)
                 deployedProviders.addAll(itsDBusProviders)
             }
         }
 
+        providers_ = GeneratedUnits.combine(deployedProviders.map[getFingerprint(it)])
+        itsMerge.close
+
         if (rootModel instanceof FDModel) {
             doGenerateDeployment(rootModel, deployments, models,
-                deployedInterfaces, deployedTypeCollections, deployedProviders,
-                fileSystemAccess, res, true)
+                deployed, deployedProviders,
+                access, res, true)
         } else if (rootModel instanceof FModel) {
             doGenerateModel(rootModel, models,
-                deployedInterfaces, deployedTypeCollections, deployedProviders,
-                fileSystemAccess, res)
+                deployed, deployedProviders,
+                access, res)
+        }
+
+        if (manifest !== null) {
+            manifest.update(input.URI.toString, digest, generatedFiles)
+            manifest.save
+        }
+        if (outputStore_ !== null) {
+            storeOutputs(storeKey)
         }
 
         fDeployManager.clearFidlModels
         fDeployManager.clearDeploymentModels
     }
 
-    def private boolean isDeployed(FInterface _iface, List<FDInterface> _deployments) {
-        for (d : _deployments) {
-            if (d.target == _iface) {
-                return true
+    /**
+     * Add the files generated by this run to the output store, including the files
+     * of units generated by other runs. Nothing is added if one of the units was not
+     * stored completely.
+     */
+    def private void storeOutputs(String _key) {
+        val itsFiles = new LinkedHashMap<String, OutputStore.StoredFile>()
+        for (itsUnit : generatedUnits_) {
+            runUnits_.getFiles(itsUnit).join
+            val itsStored = runUnits_.getStoredFiles(itsUnit)
+            if (itsStored === null) {
+                return
+            }
+            for (itsFile : itsStored) {
+                itsFiles.put(itsFile.outputConfiguration + "/" + itsFile.fileName, itsFile)
             }
         }
-        return false
+        try {
+            outputStore_.putEntry(_key, itsFiles.values)
+        } catch (IOException e) {
+            // the generation does not depend on the store
+        }
+    }
+
+    def private getDeploymentSpecification(String _name) {
+        if (modelCopy_ !== null)
+            return modelCopy_.getSpecification(_name)
+        return fDeployManager.getDeploymentSpecification(_name)
+    }
+
+    /**
+     * Take the input and its imports from the resource set of the input, where they
+     * may have been loaded for previous inputs, instead of loading them again for each
+     * input. The generator works on a copy of them (see ModelCopy).
+     */
+    def void setReuseLoadedModels(boolean _reuse) {
+        reuseLoadedModels_ = _reuse
+    }
+
+    /**
+     * Share the generated units with other runs of the generator, e.g. with the
+     * runs for the other input files of a command line invocation. A unit that was
+     * generated by another run with the same scope is not generated again. Runs
+     * that write to different locations must use different scopes.
+     */
+    def void setGeneratedUnits(GeneratedUnits _units, String _scope) {
+        units_ = _units
+        unitScope_ = _scope
     }
 
-    def private boolean isDeployed(FTypeCollection _tc, List<FDTypes> _deployments) {
-        for (d : _deployments) {
-            if (d.target == _tc) {
-                return true
+    /**
+     * The files generated by the last run, including the files of units that
+     * were generated before by another run sharing the same units (see
+     * setGeneratedUnits). Waits until those runs completed the units.
+     */
+    def Set<String> getGeneratedFiles() {
+        val Set<String> itsFiles = new LinkedHashSet<String>()
+        if (generatedOutputs_ !== null) {
+            for (itsOutput : generatedOutputs_) {
+                itsFiles.addAll(itsOutput.join)
             }
         }
-        return false
+        return itsFiles
+    }
+
+    /**
+     * The local files of the models and deployments read by the last run,
+     * i.e. the input and all of its transitive imports.
+     */
+    def Set<String> getGeneratedInputs() {
+        if (generatedInputs_ === null) {
+            return new HashSet<String>()
+        }
+        return generatedInputs_
     }
 
     def private void doGenerateDeployment(FDModel _deployment,
                                           Map<String, FDModel> _deployments,
                                           Map<String, FModel> _models,
-                                          List<FDInterface> _interfaces,
-                                          List<FDTypes> _typeCollections,
+                                          DeploymentIndex _deployed,
                                           List<FDExtensionRoot> _providers,
                                           IFileSystemAccess _access,
                                           IResource _res,
@@ -243,14 +407,14 @@ class FrancaDBusGenerator implements IGenerator {
 
         for (itsEntry : _models.entrySet) {
             if (itsImports.contains(itsEntry.key)) {
-                doInsertAccessors(itsEntry.value, _interfaces, _typeCollections)
+                doInsertAccessors(itsEntry.value, _deployed)
             }
         }
 
         for (itsEntry : _deployments.entrySet) {
             if (itsImports.contains(itsEntry.key)) {
                 doGenerateDeployment(itsEntry.value, _deployments, _models,
-                    _interfaces, _typeCollections, _providers,
+                    _deployed, _providers,
                     _access, _res, withDependencies_)
             }
         }
@@ -260,7 +424,7 @@ class FrancaDBusGenerator implements IGenerator {
                 if (itsImports.contains(itsEntry.key)) {
 
                     doGenerateModel(itsEntry.value, _models,
-                        _interfaces, _typeCollections, _providers,
+                        _deployed, _providers,
                         _access, _res)
                 }
             }
@@ -269,8 +433,7 @@ class FrancaDBusGenerator implements IGenerator {
 
     def private void doGenerateModel(FModel _model,
                                      Map<String, FModel> _models,
-                                     List<FDInterface> _interfaces,
-                                     List<FDTypes> _typeCollections,
+                                     DeploymentIndex _deployed,
                                      List<FDExtensionRoot> _providers,
                                      IFileSystemAccess _access,
                                      IResource _res) {
@@ -284,7 +447,7 @@ class FrancaDBusGenerator implements IGenerator {
         generatedFiles_.add(modelName)
 
         doGenerateComponents(_model,
-            _interfaces, _typeCollections, _providers,
+            _deployed, _providers,
             _access, _res)
 
         if (withDependencies_) {
@@ -292,7 +455,7 @@ class FrancaDBusGenerator implements IGenerator {
                 var FModel itsModel = itsEntry.value
                 if (itsModel !== null && itsModel != _model) {
                     doGenerateComponents(itsModel,
-                        _interfaces, _typeCollections, _providers,
+                        _deployed, _providers,
                         _access, _res)
                 }
             }
@@ -300,38 +463,130 @@ class FrancaDBusGenerator implements IGenerator {
     }
 
     def private doInsertAccessors(FModel _model,
-                                  List<FDInterface> _interfaces,
-                                  List<FDTypes> _typeCollections) {
-        val defaultDeploymentAccessor = new PropertyAccessor()
-
-        _model.typeCollections.forEach [
-            var PropertyAccessor typeCollectionDeploymentAccessor
-            val currentTypeCollection = it
-            if (_typeCollections.exists[it.target == currentTypeCollection]) {
-                typeCollectionDeploymentAccessor = new PropertyAccessor(
-                    new FDeployedTypeCollection(_typeCollections.filter[it.target == currentTypeCollection].last))
+                                  DeploymentIndex _deployed) {
+        val itsMeasurement = GenerationProfile.start("accessors", _model.name)
+        try {
+            _model.typeCollections.forEach [
+                insertAccessor(it, getDeploymentAccessor(it, _deployed))
+            ]
+
+            _model.interfaces.forEach [
+                insertAccessor(it, getDeploymentAccessor(it, _deployed))
+            ]
+        } finally {
+            itsMeasurement.close
+        }
+    }
+
+    /**
+     * Make the accessors of the base interfaces of an interface available to the
+     * generators. Base interfaces of a plain .fidl input, or of a model that a
+     * deployment imports only indirectly, have no accessor inserted otherwise.
+     */
+    def private insertBaseAccessors(FInterface _interface,
+                                    DeploymentIndex _deployed) {
+        val Set<FInterface> visited = new HashSet<FInterface>()
+        var FInterface itsBase = _interface.base
+        while (itsBase !== null && visited.add(itsBase)) {
+            if (getDBusAccessor(itsBase) === null) {
+                insertAccessor(itsBase, getDeploymentAccessor(itsBase, _deployed))
+            }
+            itsBase = itsBase.base
+        }
+    }
+
+    /**
+     * Get the accessor for the effective deployment of an interface or type collection.
+     * The accessor is created once per run, so that the values it resolved are shared
+     * by all generators.
+     */
+    def private PropertyAccessor getDeploymentAccessor(FTypeCollection _tc,
+                                                       DeploymentIndex _deployed) {
+        var PropertyAccessor accessor = accessors_.get(_tc)
+        if (accessor === null) {
+            if (_tc instanceof FInterface) {
+                val itsDeployment = _deployed.getInterfaceDeployment(_tc)
+                if (itsDeployment !== null) {
+                    accessor = new PropertyAccessor(new FDeployedInterface(itsDeployment))
+                }
             } else {
-                typeCollectionDeploymentAccessor = defaultDeploymentAccessor
+                val itsDeployment = _deployed.getTypeCollectionDeployment(_tc)
+                if (itsDeployment !== null) {
+                    accessor = new PropertyAccessor(new FDeployedTypeCollection(itsDeployment))
+                }
             }
-            insertAccessor(currentTypeCollection, typeCollectionDeploymentAccessor)
-        ]
+            if (accessor === null) {
+                accessor = new PropertyAccessor()
+            }
+            accessors_.put(_tc, accessor)
+        }
+        return accessor
+    }
 
-        _model.interfaces.forEach [
-            var PropertyAccessor interfaceDeploymentAccessor
-            val currentInterface = it
-            if (_interfaces.exists[it.target == currentInterface]) {
-                interfaceDeploymentAccessor = new PropertyAccessor(
-                    new FDeployedInterface(_interfaces.filter[it.target == currentInterface].last))
+    /**
+     * Generate a unit of code, unless it was already generated or belongs to
+     * another shard. Units depend on the deployments of the elements they use,
+     * proxies and stub adapters on the deployed providers as well.
+     */
+    def private void generateUnit(String _kind, FTypeCollection _tc, DeploymentIndex _deployed,
+                                  IFileSystemAccess _access, (IFileSystemAccess)=>void _generate) {
+        if (!runUnits_.isAssigned(_tc)) {
+            return
+        }
+        var EObject itsDeployment
+        if (_tc instanceof FInterface) {
+            itsDeployment = _deployed.getInterfaceDeployment(_tc)
+        } else {
+            itsDeployment = _deployed.getTypeCollectionDeployment(_tc)
+        }
+        var String itsScope = unitScope_
+        if (_kind != "deployment") {
+            itsScope = itsScope + "|" + providers_
+        }
+        val itsDependencies = new ArrayList<String>()
+        for (itsDependency : dependencies_.getDependencies(_tc)) {
+            if (itsDependency instanceof FInterface) {
+                itsDependencies.add(getFingerprint(_deployed.getInterfaceDeployment(itsDependency)))
             } else {
-                interfaceDeploymentAccessor = defaultDeploymentAccessor
+                itsDependencies.add(getFingerprint(_deployed.getTypeCollectionDeployment(itsDependency)))
             }
-            insertAccessor(currentInterface, interfaceDeploymentAccessor)
-        ]
+        }
+        val itsUnit = GeneratedUnits.getUnit(_kind, _tc, getFingerprint(itsDeployment), itsDependencies, itsScope)
+        if (runUnits_.claim(itsUnit)) {
+            val itsAccess = new RecordingFileSystemAccess(_access, outputStore_)
+            val itsMeasurement = GenerationProfile.start("render." + _kind, ShardAssignment.getKey(_tc))
+            try {
+                _generate.apply(itsAccess)
+                runUnits_.complete(itsUnit, itsAccess.files, itsAccess.storedFiles)
+            } catch (Throwable e) {
+                runUnits_.complete(itsUnit, itsAccess.files, null)
+                throw e
+            } finally {
+                itsMeasurement.close
+            }
+        }
+        generatedUnits_.add(itsUnit)
+        generatedOutputs_.add(runUnits_.getFiles(itsUnit))
+    }
+
+    /**
+     * The fingerprint of a deployment, computed once per run. The deployments
+     * do not change after the merge.
+     */
+    def private String getFingerprint(EObject _deployment) {
+        if (_deployment === null) {
+            return ""
+        }
+        var itsFingerprint = fingerprints_.get(_deployment)
+        if (itsFingerprint === null) {
+            itsFingerprint = GeneratedUnits.fingerprint(_deployment)
+            fingerprints_.put(_deployment, itsFingerprint)
+        }
+        return itsFingerprint
     }
 
     def private void doGenerateComponents(FModel _model,
-                                     List<FDInterface> _interfaces,
-                                     List<FDTypes> _typeCollections,
+                                     DeploymentIndex _deployed,
                                      List<FDExtensionRoot> _providers,
                                      IFileSystemAccess _access,
                                      IResource _res) {
@@ -339,60 +594,60 @@ class FrancaDBusGenerator implements IGenerator {
         var typeCollectionsToGenerate = _model.typeCollections.toSet
 
         typeCollectionsToGenerate.forEach [
-            val currentTypeCollection = it
+            val itsTypeCollection = it
             var PropertyAccessor deploymentAccessor = getDBusAccessor(it)
             if (null === deploymentAccessor) {
-                if (_typeCollections.exists[it.target == currentTypeCollection]) {
-                    deploymentAccessor = new PropertyAccessor(
-                        new FDeployedTypeCollection(_typeCollections.filter[it.target == currentTypeCollection].last))
-                } else {
-                    deploymentAccessor = new PropertyAccessor()
-                }
+                deploymentAccessor = getDeploymentAccessor(it, _deployed)
             }
-            it.generateTypeCollectionDeployment(_access, deploymentAccessor, _res)
+            val itsAccessor = deploymentAccessor
+            generateUnit("deployment", it, _deployed, _access) [
+                itsTypeCollection.generateTypeCollectionDeployment(it, itsAccessor, _res)
+            ]
         ]
 
         interfacesToGenerate.forEach [
-            val currentInterface = it
+            val itsInterface = it
             var PropertyAccessor deploymentAccessor = getDBusAccessor(it)
             if (null === deploymentAccessor) {
-	            if (_interfaces.exists[it.target == currentInterface]) {
-	                deploymentAccessor = new PropertyAccessor(
-	                    new FDeployedInterface(_interfaces.filter[it.target == currentInterface].last))
-	            } else {
-	                deploymentAccessor = new PropertyAccessor()
-	            }
+                deploymentAccessor = getDeploymentAccessor(it, _deployed)
 			}
+            val itsAccessor = deploymentAccessor
+            insertBaseAccessors(it, _deployed)
             if (FPreferencesDBus::instance.getPreference(PreferenceConstantsDBus::P_GENERATE_PROXY_DBUS, "true").
                 equals("true")) {
-                it.generateDBusProxy(_access, deploymentAccessor, _providers, _res)
+                generateUnit("proxy", it, _deployed, _access) [
+                    itsInterface.generateDBusProxy(it, itsAccessor, _providers, _res)
+                ]
             }
             if (FPreferencesDBus::instance.getPreference(PreferenceConstantsDBus::P_GENERATE_STUB_DBUS, "true").
                 equals("true")) {
-                it.generateDBusStubAdapter(_access, deploymentAccessor, _providers, _res)
+                generateUnit("stubAdapter", it, _deployed, _access) [
+                    itsInterface.generateDBusStubAdapter(it, itsAccessor, _providers, _res)
+                ]
             }
 
             if (FPreferencesDBus::instance.getPreference(PreferenceConstantsDBus::P_GENERATE_COMMON_DBUS, "true").
                 equals("true")) {
-                it.generateDeployment(_access, deploymentAccessor, _res)
+                generateUnit("deployment", it, _deployed, _access) [
+                    itsInterface.generateDeployment(it, itsAccessor, _res)
+                ]
             }
             it.managedInterfaces.forEach [
-                val currentManagedInterface = it
-                var PropertyAccessor managedDeploymentAccessor
-                if (_interfaces.exists[it.target == currentManagedInterface]) {
-                    managedDeploymentAccessor = new PropertyAccessor(
-                        new FDeployedInterface(_interfaces.filter[it.target == currentManagedInterface].last))
-                } else {
-                    managedDeploymentAccessor = new PropertyAccessor()
-                }
+                val itsManagedInterface = it
+                val managedDeploymentAccessor = getDeploymentAccessor(it, _deployed)
+                insertBaseAccessors(it, _deployed)
 
                 if (FPreferencesDBus::instance.getPreference(PreferenceConstantsDBus::P_GENERATE_PROXY_DBUS, "true").
                     equals("true")) {
-                    it.generateDBusProxy(_access, managedDeploymentAccessor, _providers, _res)
+                    generateUnit("proxy", it, _deployed, _access) [
+                        itsManagedInterface.generateDBusProxy(it, managedDeploymentAccessor, _providers, _res)
+                    ]
                 }
                 if (FPreferencesDBus::instance.getPreference(PreferenceConstantsDBus::P_GENERATE_STUB_DBUS, "true").
                     equals("true")) {
-                    it.generateDBusStubAdapter(_access, managedDeploymentAccessor, _providers, _res)
+                    generateUnit("stubAdapter", it, _deployed, _access) [
+                        itsManagedInterface.generateDBusStubAdapter(it, managedDeploymentAccessor, _providers, _res)
+                    ]
                 }
             ]
         ]
@@ -400,4 +655,17 @@ class FrancaDBusGenerator implements IGenerator {
 
     boolean withDependencies_
 	Set<String> generatedFiles_
+	Map<FTypeCollection, PropertyAccessor> accessors_
+	ModelDependencies dependencies_
+	Map<EObject, String> fingerprints_
+	GeneratedUnits units_
+	GeneratedUnits runUnits_
+	String unitScope_ = ""
+	String providers_ = ""
+	List<CompletableFuture<Set<String>>> generatedOutputs_
+	List<String> generatedUnits_
+	OutputStore outputStore_
+	Set<String> generatedInputs_
+	boolean reuseLoadedModels_ = false
+	ModelCopy modelCopy_
 }
@@ -100,9 +100,9 @@ class FrancaDBusGeneratorExtensions {
             return ""
 
         if (_method.errorEnum !== null)
-            return _method.errorEnum.dbusFTypeSignature(_accessor)
+            return _method.errorEnum.cachedFTypeSignature(_accessor)
 
-        return _method.errors.dbusFTypeSignature(_accessor)
+        return _method.errors.cachedFTypeSignature(_accessor)
     }
 
     def dbusErrorReplyOutSignature(FBroadcast _broadcast, FMethod _method, PropertyAccessor _accessor) {
@@ -143,7 +143,32 @@ class FrancaDBusGeneratorExtensions {
         }
     }
 
+    // Signatures are remembered by the accessor they were computed with. As the
+    // accessor of an overwrite differs from the one of its parent, overwrites are
+    // respected. Accessors are created per generation run, so are the signatures.
     def String typeDbusSignature(FTypedElement _element, PropertyAccessor _accessor) {
+        if (_accessor === null)
+            return _element.computeTypeDbusSignature(_accessor)
+        var signature = _accessor.getSignature(_element)
+        if (signature === null) {
+            signature = _element.computeTypeDbusSignature(_accessor)
+            _accessor.putSignature(_element, signature)
+        }
+        return signature
+    }
+
+    def private String cachedFTypeSignature(FType _type, PropertyAccessor _accessor) {
+        if (_accessor === null)
+            return _type.dbusFTypeSignature(_accessor)
+        var signature = _accessor.getSignature(_type)
+        if (signature === null) {
+            signature = _type.dbusFTypeSignature(_accessor)
+            _accessor.putSignature(_type, signature)
+        }
+        return signature
+    }
+
+    def private String computeTypeDbusSignature(FTypedElement _element, PropertyAccessor _accessor) {
         var FTypeRef fTypeRef = _element.type
         if (fTypeRef === null)
             return "";
@@ -162,7 +187,7 @@ class FrancaDBusGeneratorExtensions {
         }
 
         if (fTypeRef.derived !== null)
-            return fTypeRef.derived.dbusFTypeSignature(_accessor)
+            return fTypeRef.derived.cachedFTypeSignature(_accessor)
         if (fTypeRef.interval !== null)
             return FBasicTypeId::INT32.dbusSignature
         return fTypeRef.predefined.dbusSignature
@@ -173,7 +198,7 @@ class FrancaDBusGeneratorExtensions {
             return "";
 
         if (_typeRef.derived !== null)
-            return _typeRef.derived.dbusFTypeSignature(_accessor)
+            return _typeRef.derived.cachedFTypeSignature(_accessor)
         if (_typeRef.interval !== null)
             return dbusSignature(FBasicTypeId::INT32)
         return _typeRef.predefined.dbusSignature
@@ -0,0 +1,260 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.genivi.commonapi.dbus.generator.OutputStore.StoredFile;
+
+/**
+ * The units of generated code of several generator runs, e.g. of all input
+ * files of one command line invocation.
+ *
+ * A unit is one kind of output (proxy, stub adapter, deployment) for one
+ * interface or type collection with one effective deployment. Models are
+ * loaded again for each run, therefore units are identified by the URI of the
+ * element and a fingerprint of the content of its deployment and of the
+ * deployments of the elements it uses instead of by object identity. For each
+ * unit, the files it generated are kept, and the entries of the output store
+ * if one is used. The set is safe to be shared by concurrent runs.
+ *
+ * If a shard assignment is set, only the units of the elements assigned to
+ * this shard are generated.
+ */
+public class GeneratedUnits {
+
+	private final Map<String, CompletableFuture<Set<String>>> units = new ConcurrentHashMap<String, CompletableFuture<Set<String>>>();
+	private final Map<String, List<StoredFile>> storedFiles = new ConcurrentHashMap<String, List<StoredFile>>();
+	private final AtomicInteger rendered = new AtomicInteger();
+	private final AtomicInteger deduplicated = new AtomicInteger();
+	private volatile ShardAssignment shard = null;
+
+	public void setShard(ShardAssignment shard) {
+		this.shard = shard;
+	}
+
+	public ShardAssignment getShard() {
+		return shard;
+	}
+
+	/**
+	 * @return true if the units of the element are generated by this run
+	 */
+	public boolean isAssigned(EObject element) {
+		ShardAssignment itsShard = shard;
+		return itsShard == null || itsShard.isAssigned(element);
+	}
+
+	/**
+	 * Identify a unit.
+	 *
+	 * @param kind
+	 *            the kind of output
+	 * @param element
+	 *            the interface or type collection
+	 * @param deployment
+	 *            the effective deployment of the element or null
+	 * @param scope
+	 *            distinguishes runs that write to different locations
+	 */
+	public static String getUnit(String kind, EObject element, EObject deployment, String scope) {
+		return getUnit(kind, element, fingerprint(deployment), Collections.<String>emptyList(), scope);
+	}
+
+	/**
+	 * Identify a unit whose code depends on the deployments of other elements
+	 * as well, e.g. of base interfaces or of type collections whose types it
+	 * uses. The key has a fixed size apart from the scope: the fingerprints
+	 * are combined into one digest.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint of the effective deployment of the element
+	 * @param dependencies
+	 *            the fingerprints of the effective deployments of the elements
+	 *            the element uses
+	 */
+	public static String getUnit(String kind, EObject element, String fingerprint,
+			Collection<String> dependencies, String scope) {
+		String itsFingerprint = fingerprint;
+		if (!dependencies.isEmpty()) {
+			MessageDigest digest = createDigest();
+			update(digest, fingerprint);
+			for (String dependency : dependencies) {
+				update(digest, "|");
+				update(digest, dependency);
+			}
+			itsFingerprint = toHex(digest.digest());
+		}
+		return scope + '|' + kind + '|' + EcoreUtil.getURI(element) + '|' + itsFingerprint;
+	}
+
+	/**
+	 * Claim a unit for generation.
+	 *
+	 * @return true if the unit was not generated before and must be generated
+	 *         by the caller, who must call complete() afterwards
+	 */
+	public boolean claim(String unit) {
+		if (units.putIfAbsent(unit, new CompletableFuture<Set<String>>()) == null) {
+			rendered.incrementAndGet();
+			return true;
+		}
+		deduplicated.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Record the files that were generated for a claimed unit.
+	 */
+	public void complete(String unit, Set<String> files) {
+		complete(unit, files, null);
+	}
+
+	/**
+	 * Record the files that were generated for a claimed unit and added to
+	 * the output store.
+	 *
+	 * @param stored
+	 *            the files in the output store, or null if the unit was not
+	 *            stored completely
+	 */
+	public void complete(String unit, Set<String> files, List<StoredFile> stored) {
+		if (stored != null) {
+			storedFiles.put(unit, Collections.unmodifiableList(stored));
+		}
+		CompletableFuture<Set<String>> itsFiles = units.get(unit);
+		if (itsFiles != null) {
+			itsFiles.complete(Collections.unmodifiableSet(files));
+		}
+	}
+
+	/**
+	 * @return the files of the unit, available as soon as the run that
+	 *         claimed the unit completed it
+	 */
+	public CompletableFuture<Set<String>> getFiles(String unit) {
+		CompletableFuture<Set<String>> itsFiles = units.get(unit);
+		return (itsFiles != null ? itsFiles : CompletableFuture.completedFuture(Collections.<String>emptySet()));
+	}
+
+	/**
+	 * @return the files of the unit in the output store, or null if they were
+	 *         not stored completely. Only valid once the files of the unit are
+	 *         available (see getFiles).
+	 */
+	public List<StoredFile> getStoredFiles(String unit) {
+		return storedFiles.get(unit);
+	}
+
+	/**
+	 * @return the number of units that were generated
+	 */
+	public int getRendered() {
+		return rendered.get();
+	}
+
+	/**
+	 * @return the number of units that were skipped, because they were
+	 *         generated before
+	 */
+	public int getDeduplicated() {
+		return deduplicated.get();
+	}
+
+	/**
+	 * The SHA-256 digest of the content of a deployment: the classes and
+	 * attribute values of all its elements and the URIs of the elements they
+	 * refer to. Core deployments that were merged into the deployment are part
+	 * of its content. The digest of no deployment is empty.
+	 */
+	public static String fingerprint(EObject deployment) {
+		if (deployment == null) {
+			return "";
+		}
+		MessageDigest digest = createDigest();
+		StringBuilder itsContent = new StringBuilder();
+		append(deployment, itsContent);
+		for (Iterator<EObject> it = deployment.eAllContents(); it.hasNext();) {
+			update(digest, itsContent);
+			itsContent.setLength(0);
+			append(it.next(), itsContent);
+		}
+		update(digest, itsContent);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * The SHA-256 digest of several fingerprints, e.g. of all deployed
+	 * providers.
+	 */
+	public static String combine(Collection<String> fingerprints) {
+		MessageDigest digest = createDigest();
+		for (String fingerprint : fingerprints) {
+			update(digest, fingerprint);
+			update(digest, "|");
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void append(EObject object, StringBuilder fingerprint) {
+		fingerprint.append(object.eClass().getName()).append('(');
+		for (EStructuralFeature feature : object.eClass().getEAllStructuralFeatures()) {
+			if (!object.eIsSet(feature) || feature.isTransient() || feature.isDerived()) {
+				continue;
+			}
+			if (feature instanceof EAttribute) {
+				fingerprint.append(feature.getName()).append('=').append(object.eGet(feature)).append(';');
+			} else if (!((EReference) feature).isContainment() && !((EReference) feature).isContainer()) {
+				fingerprint.append(feature.getName()).append('=');
+				Object value = object.eGet(feature, false);
+				if (value instanceof Collection<?>) {
+					for (Object target : (Collection<?>) value) {
+						fingerprint.append(EcoreUtil.getURI((EObject) target)).append(',');
+					}
+				} else if (value instanceof EObject) {
+					fingerprint.append(EcoreUtil.getURI((EObject) value));
+				}
+				fingerprint.append(';');
+			}
+		}
+		fingerprint.append(')');
+	}
+
+	private static void update(MessageDigest digest, CharSequence text) {
+		digest.update(text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder itsHex = new StringBuilder();
+		for (byte b : bytes) {
+			itsHex.append(String.format("%02x", b));
+		}
+		return itsHex.toString();
+	}
+}
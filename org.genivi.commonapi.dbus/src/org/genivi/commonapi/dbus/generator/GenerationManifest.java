@@ -0,0 +1,247 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus;
+
+/**
+ * Persistent record of the inputs of previous generation runs, stored as
+ * .commonapi-dbus-cache in the output directory.
+ *
+ * For each generated model the manifest stores a digest over the generator
+ * version, the relevant preference values and the content of the model and
+ * all of its transitive imports, together with the list of files that were
+ * written. A model whose digest is unchanged and whose output files still
+ * exist does not need to be generated again.
+ */
+public class GenerationManifest {
+
+	public static final String FILE_NAME = ".commonapi-dbus-cache";
+
+	private static final String DIGEST_PREFIX = "digest:";
+	private static final String OUTPUTS_PREFIX = "outputs:";
+
+	/**
+	 * The preferences that decide where the generated files are written
+	 */
+	private static final String[] OUTPUT_PREFERENCES = {
+			PreferenceConstantsDBus.P_OUTPUT_DEFAULT_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_COMMON_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_PROXIES_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_STUBS_DBUS,
+			PreferenceConstantsDBus.P_OUTPUT_SUBDIRS_DBUS };
+
+	/**
+	 * The preferences that influence the generated files: those that influence
+	 * their content (see OutputStore) and their locations.
+	 */
+	private static final List<String> RELEVANT_PREFERENCES = new ArrayList<String>();
+	static {
+		RELEVANT_PREFERENCES.addAll(Arrays.asList(OutputStore.CODE_PREFERENCES));
+		RELEVANT_PREFERENCES.addAll(Arrays.asList(OUTPUT_PREFERENCES));
+	}
+
+	private static final Map<String, GenerationManifest> manifests = new HashMap<String, GenerationManifest>();
+
+	private final File file;
+	private final Properties entries = new Properties();
+	private final Map<String, String> contentStamps = new HashMap<String, String>();
+	private final Map<String, String> contentHashes = new HashMap<String, String>();
+	private boolean isDirty = false;
+
+	private GenerationManifest(File file) {
+		this.file = file;
+		if (file.isFile()) {
+			try (InputStream in = new FileInputStream(file)) {
+				entries.load(in);
+			} catch (IOException e) {
+				// an unreadable manifest is treated like a missing one
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Get the manifest of the given output directory. All generator instances
+	 * share the same manifest object per directory.
+	 */
+	public static synchronized GenerationManifest getInstance(String outputDirectory) {
+		File itsFile = new File(outputDirectory, FILE_NAME).getAbsoluteFile();
+		GenerationManifest manifest = manifests.get(itsFile.getPath());
+		if (manifest == null) {
+			manifest = new GenerationManifest(itsFile);
+			manifests.put(itsFile.getPath(), manifest);
+		}
+		return manifest;
+	}
+
+	/**
+	 * Compute the digest of a model from its transitive imports, the generator
+	 * version and the preference values.
+	 *
+	 * @param models
+	 *            the URIs of the model and all its (transitive) imports
+	 * @param version
+	 *            the generator version
+	 * @param preferences
+	 *            the current preference values
+	 */
+	public synchronized String computeDigest(Collection<String> models, String version,
+			Map<String, String> preferences) {
+		StringBuilder itsInput = new StringBuilder();
+		itsInput.append("version=").append(version).append('\n');
+		for (String preference : RELEVANT_PREFERENCES) {
+			itsInput.append(preference).append('=').append(preferences.get(preference)).append('\n');
+		}
+		for (String model : new TreeSet<String>(models)) {
+			itsInput.append(model).append('=').append(getContentHash(model)).append('\n');
+		}
+		return hash(itsInput.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Check whether the model was generated with the given digest and all of
+	 * its output files do still exist.
+	 */
+	public synchronized boolean isUpToDate(String model, String digest) {
+		if (!digest.equals(entries.getProperty(DIGEST_PREFIX + model))) {
+			return false;
+		}
+		String outputs = entries.getProperty(OUTPUTS_PREFIX + model, "");
+		for (String output : outputs.split(File.pathSeparator)) {
+			if (!output.isEmpty() && !new File(output).isFile()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the files that were generated for the model
+	 */
+	public synchronized List<String> getOutputs(String model) {
+		List<String> itsOutputs = new ArrayList<String>();
+		for (String output : entries.getProperty(OUTPUTS_PREFIX + model, "").split(File.pathSeparator)) {
+			if (!output.isEmpty()) {
+				itsOutputs.add(output);
+			}
+		}
+		return itsOutputs;
+	}
+
+	/**
+	 * Record the digest and the generated files of a model.
+	 */
+	public synchronized void update(String model, String digest, Collection<String> outputs) {
+		StringBuilder itsOutputs = new StringBuilder();
+		for (String output : outputs) {
+			if (itsOutputs.length() > 0) {
+				itsOutputs.append(File.pathSeparator);
+			}
+			itsOutputs.append(output);
+		}
+		entries.setProperty(DIGEST_PREFIX + model, digest);
+		entries.setProperty(OUTPUTS_PREFIX + model, itsOutputs.toString());
+		isDirty = true;
+	}
+
+	/**
+	 * Write the manifest, if it was changed.
+	 *
+	 * @throws IOException
+	 *             if the manifest cannot be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!isDirty) {
+			return;
+		}
+		File itsDirectory = file.getParentFile();
+		if (itsDirectory != null && !itsDirectory.exists()) {
+			itsDirectory.mkdirs();
+		}
+		File itsTemp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(itsTemp)) {
+			entries.store(out, "CommonAPI D-Bus incremental generation manifest");
+		}
+		if (file.exists() && !file.delete() || !itsTemp.renameTo(file)) {
+			throw new IOException("Failed to write " + file);
+		}
+		isDirty = false;
+	}
+
+	/**
+	 * The last content hash of each model is remembered. For files the hash is
+	 * recomputed when the modification time or the size changes.
+	 */
+	private String getContentHash(String model) {
+		URI uri = URI.createURI(model);
+		String itsStamp = "";
+		if (uri.isFile()) {
+			File itsFile = new File(uri.toFileString());
+			itsStamp = itsFile.lastModified() + ":" + itsFile.length();
+		}
+		String itsHash = contentHashes.get(model);
+		if (itsHash == null || !itsStamp.equals(contentStamps.get(model))) {
+			itsHash = computeContentHash(uri);
+			contentHashes.put(model, itsHash);
+			contentStamps.put(model, itsStamp);
+		}
+		return itsHash;
+	}
+
+	private static String computeContentHash(URI uri) {
+		try (InputStream in = URIConverter.INSTANCE.createInputStream(uri)) {
+			MessageDigest digest = createDigest();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, length);
+			}
+			return toHex(digest.digest());
+		} catch (IOException e) {
+			return "missing";
+		}
+	}
+
+	private static String hash(byte[] data) {
+		return toHex(createDigest().digest(data));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder itsHex = new StringBuilder();
+		for (byte b : bytes) {
+			itsHex.append(String.format("%02x", b));
+		}
+		return itsHex.toString();
+	}
+}
@@ -0,0 +1,303 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wall time, CPU time and allocated bytes of the phases of a generation run,
+ * e.g. loading, validation, deployment merge and rendering.
+ *
+ * Each measurement belongs to a phase and a subject, e.g. the file or the
+ * interface the phase worked on. Phases may be nested, e.g. writing files
+ * happens while rendering; the values of a phase include those of the phases
+ * nested into it. CPU time and allocated bytes are measured for the current
+ * thread and are reported as 0 if the JVM does not support it.
+ *
+ * Measurements are only taken while a profile is active (see setCurrent).
+ * The profile is safe to be used by concurrent threads.
+ */
+public class GenerationProfile {
+
+	/**
+	 * A running measurement, stopped by close().
+	 */
+	public interface Measurement extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * The accumulated values of a phase or of a phase and subject.
+	 */
+	public static class Entry {
+		private final String phase;
+		private final String subject;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong wallTime = new AtomicLong();
+		private final AtomicLong cpuTime = new AtomicLong();
+		private final AtomicLong allocatedBytes = new AtomicLong();
+
+		Entry(String phase, String subject) {
+			this.phase = phase;
+			this.subject = subject;
+		}
+
+		void add(long wall, long cpu, long allocated) {
+			count.incrementAndGet();
+			wallTime.addAndGet(wall);
+			cpuTime.addAndGet(cpu);
+			allocatedBytes.addAndGet(allocated);
+		}
+
+		public String getPhase() {
+			return phase;
+		}
+
+		/**
+		 * @return the subject or null for the total of a phase
+		 */
+		public String getSubject() {
+			return subject;
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return the wall time in nanoseconds
+		 */
+		public long getWallTime() {
+			return wallTime.get();
+		}
+
+		/**
+		 * @return the CPU time in nanoseconds
+		 */
+		public long getCpuTime() {
+			return cpuTime.get();
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes.get();
+		}
+	}
+
+	private static final Measurement NONE = () -> {
+	};
+
+	private static volatile GenerationProfile current = null;
+
+	private final Map<String, Entry> phases = new ConcurrentHashMap<String, Entry>();
+	private final Map<String, Entry> subjects = new ConcurrentHashMap<String, Entry>();
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean hasCpuTime;
+	private final Method allocatedBytes;
+
+	public GenerationProfile() {
+		hasCpuTime = threads.isCurrentThreadCpuTimeSupported();
+		if (hasCpuTime && !threads.isThreadCpuTimeEnabled()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		// The allocated bytes are only available from the extension of the
+		// HotSpot VM, which is not visible to all bundles
+		Method itsMethod = null;
+		try {
+			Class<?> itsClass = Class.forName("com.sun.management.ThreadMXBean");
+			if (itsClass.isInstance(threads)
+					&& Boolean.TRUE.equals(itsClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(threads))) {
+				itsMethod = itsClass.getMethod("getThreadAllocatedBytes", long.class);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			itsMethod = null;
+		}
+		allocatedBytes = itsMethod;
+	}
+
+	/**
+	 * Set the active profile, or null to stop profiling.
+	 */
+	public static void setCurrent(GenerationProfile profile) {
+		current = profile;
+	}
+
+	public static GenerationProfile getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Start a measurement in the active profile. Without an active profile,
+	 * nothing is measured.
+	 *
+	 * @param phase
+	 *            the name of the phase
+	 * @param subject
+	 *            what the phase works on, or null
+	 */
+	public static Measurement start(String phase, String subject) {
+		GenerationProfile profile = current;
+		if (profile == null) {
+			return NONE;
+		}
+		return profile.startMeasurement(phase, subject);
+	}
+
+	private Measurement startMeasurement(String phase, String subject) {
+		long threadId = Thread.currentThread().getId();
+		long startWall = System.nanoTime();
+		long startCpu = getCpuTime();
+		long startAllocated = getAllocatedBytes(threadId);
+		return () -> {
+			long wall = System.nanoTime() - startWall;
+			long cpu = getCpuTime() - startCpu;
+			long allocated = getAllocatedBytes(threadId) - startAllocated;
+			phases.computeIfAbsent(phase, p -> new Entry(p, null)).add(wall, cpu, allocated);
+			if (subject != null) {
+				subjects.computeIfAbsent(phase + "\n" + subject, s -> new Entry(phase, subject)).add(wall, cpu,
+						allocated);
+			}
+		};
+	}
+
+	private long getCpuTime() {
+		return hasCpuTime ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private long getAllocatedBytes(long threadId) {
+		if (allocatedBytes == null) {
+			return 0;
+		}
+		try {
+			return (Long) allocatedBytes.invoke(threads, threadId);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the totals of the phases, longest wall time first
+	 */
+	public List<Entry> getPhases() {
+		return sorted(phases.values());
+	}
+
+	/**
+	 * @return the values per phase and subject, longest wall time first
+	 */
+	public List<Entry> getSubjects() {
+		return sorted(subjects.values());
+	}
+
+	private static List<Entry> sorted(Collection<Entry> entries) {
+		List<Entry> itsEntries = new ArrayList<Entry>(entries);
+		itsEntries.sort(Comparator.comparingLong(Entry::getWallTime).reversed()
+				.thenComparing(Entry::getPhase)
+				.thenComparing(e -> e.getSubject() != null ? e.getSubject() : ""));
+		return itsEntries;
+	}
+
+	/**
+	 * A summary of the phases and the slowest subjects.
+	 *
+	 * @param top
+	 *            the number of subjects to list
+	 */
+	public List<String> getSummary(int top) {
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("%-28s %8s %12s %12s %12s", "Phase", "Count", "Wall [ms]", "CPU [ms]",
+				"Alloc [MB]"));
+		for (Entry entry : getPhases()) {
+			lines.add(format(entry.getPhase(), entry));
+		}
+		List<Entry> itsSubjects = getSubjects();
+		if (!itsSubjects.isEmpty()) {
+			lines.add("");
+			lines.add("Top " + Math.min(top, itsSubjects.size()) + " subjects by wall time:");
+			for (Entry entry : itsSubjects.subList(0, Math.min(top, itsSubjects.size()))) {
+				lines.add(format(entry.getPhase(), entry) + "  " + entry.getSubject());
+			}
+		}
+		return lines;
+	}
+
+	private static String format(String name, Entry entry) {
+		return String.format("%-28s %8d %12.1f %12.1f %12.1f", name, entry.getCount(),
+				entry.getWallTime() / 1e6, entry.getCpuTime() / 1e6, entry.getAllocatedBytes() / (1024.0 * 1024.0));
+	}
+
+	/**
+	 * Write the profile as JSON:
+	 *
+	 * <pre>
+	 * {
+	 *   "phases": [ { "phase": "...", "count": n, "wallNanos": n, "cpuNanos": n, "allocatedBytes": n }, ... ],
+	 *   "subjects": [ { "phase": "...", "subject": "...", "count": n, ... }, ... ]
+	 * }
+	 * </pre>
+	 */
+	public void writeJson(String fileName) throws IOException {
+		File file = new File(fileName);
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists()) {
+			directory.mkdirs();
+		}
+		try (PrintWriter writer = new PrintWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			writer.println("{");
+			writer.println("  \"phases\": [");
+			writeEntries(writer, getPhases());
+			writer.println("  ],");
+			writer.println("  \"subjects\": [");
+			writeEntries(writer, getSubjects());
+			writer.println("  ]");
+			writer.println("}");
+		}
+	}
+
+	private static void writeEntries(PrintWriter writer, List<Entry> entries) {
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			writer.print("    { \"phase\": " + quote(entry.getPhase()));
+			if (entry.getSubject() != null) {
+				writer.print(", \"subject\": " + quote(entry.getSubject()));
+			}
+			writer.print(", \"count\": " + entry.getCount() + ", \"wallNanos\": " + entry.getWallTime()
+					+ ", \"cpuNanos\": " + entry.getCpuTime() + ", \"allocatedBytes\": " + entry.getAllocatedBytes()
+					+ " }");
+			writer.println(i + 1 < entries.size() ? "," : "");
+		}
+	}
+
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,171 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
+import org.franca.core.franca.FModel;
+import org.franca.core.franca.Import;
+import org.franca.deploymodel.dsl.fDeploy.FDModel;
+import org.franca.deploymodel.dsl.fDeploy.FDSpecification;
+
+/**
+ * A private copy of a loaded input and of all models and deployments it
+ * imports, directly or indirectly.
+ *
+ * The generator adds deployments to the input and merges Core deployments into
+ * DBus deployments in place. Working on a copy leaves the loaded models
+ * unchanged, so that a resource set that keeps them across several inputs,
+ * e.g. the model cache of the command line tool, parses and links every model
+ * only once. Copying is much cheaper than parsing and linking. The copies are
+ * kept in resources with the URIs of the originals, so the URIs of the models
+ * stay the same.
+ */
+public class ModelCopy {
+
+	private final EObject root;
+	private final Map<String, FModel> models = new LinkedHashMap<String, FModel>();
+	private final Map<String, FDModel> deployments = new LinkedHashMap<String, FDModel>();
+	private final Map<String, FDSpecification> specifications = new HashMap<String, FDSpecification>();
+
+	/**
+	 * Copy an input and its imports. Imports that are not loaded yet are
+	 * loaded into the resource set of the input.
+	 *
+	 * @param input
+	 *            the input, which must belong to a resource set
+	 */
+	public ModelCopy(Resource input) throws IOException {
+		ResourceSet resourceSet = input.getResourceSet();
+		if (!input.isLoaded()) {
+			input.load(resourceSet.getLoadOptions());
+		}
+		List<Resource> closure = getClosure(input);
+
+		Copier copier = new Copier();
+		ResourceSet copies = new ResourceSetImpl();
+		for (Resource resource : closure) {
+			Resource copy = new ResourceImpl(resource.getURI());
+			copy.getContents().addAll(copier.copyAll(resource.getContents()));
+			copies.getResources().add(copy);
+		}
+		copier.copyReferences();
+
+		EObject itsRoot = null;
+		for (Resource resource : closure) {
+			if (resource.getContents().isEmpty()) {
+				continue;
+			}
+			EObject model = copier.get(resource.getContents().get(0));
+			if (resource == input) {
+				itsRoot = model;
+			}
+			if (model instanceof FModel) {
+				models.put(resource.getURI().toString(), (FModel) model);
+			} else if (model instanceof FDModel) {
+				deployments.put(resource.getURI().toString(), (FDModel) model);
+				for (FDSpecification specification : ((FDModel) model).getSpecifications()) {
+					specifications.put(specification.getName(), specification);
+				}
+			}
+		}
+		root = itsRoot;
+	}
+
+	/**
+	 * @return the copy of the input model or deployment, or null if the input
+	 *         is empty
+	 */
+	public EObject getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return the copies of the models by the URI of their file
+	 */
+	public Map<String, FModel> getModels() {
+		return models;
+	}
+
+	/**
+	 * @return the copies of the deployments by the URI of their file
+	 */
+	public Map<String, FDModel> getDeployments() {
+		return deployments;
+	}
+
+	/**
+	 * @return the copy of the deployment specification with the given name,
+	 *         or null if no deployment defines it
+	 */
+	public FDSpecification getSpecification(String name) {
+		return specifications.get(name);
+	}
+
+	/**
+	 * Collect the input and all resources it imports, directly or indirectly,
+	 * in breadth first order.
+	 */
+	private static List<Resource> getClosure(Resource input) {
+		ResourceSet resourceSet = input.getResourceSet();
+		List<Resource> closure = new ArrayList<Resource>();
+		Set<URI> visited = new HashSet<URI>();
+		List<Resource> todo = new LinkedList<Resource>();
+		todo.add(input);
+		while (!todo.isEmpty()) {
+			Resource resource = todo.remove(0);
+			if (resource == null || !visited.add(resource.getURI())) {
+				continue;
+			}
+			closure.add(resource);
+			for (String importURI : getImportURIs(resource)) {
+				URI uri = URI.createURI(importURI);
+				if (uri.isRelative()) {
+					uri = uri.resolve(resource.getURI());
+				}
+				try {
+					todo.add(resourceSet.getResource(uri, true));
+				} catch (RuntimeException e) {
+					// unresolved imports were reported by the validation
+				}
+			}
+		}
+		return closure;
+	}
+
+	private static List<String> getImportURIs(Resource resource) {
+		List<String> importURIs = new ArrayList<String>();
+		if (resource.getContents().isEmpty()) {
+			return importURIs;
+		}
+		EObject model = resource.getContents().get(0);
+		if (model instanceof FModel) {
+			for (Import anImport : ((FModel) model).getImports()) {
+				importURIs.add(anImport.getImportURI());
+			}
+		}
+		if (model instanceof FDModel) {
+			for (org.franca.deploymodel.dsl.fDeploy.Import anImport : ((FDModel) model).getImports()) {
+				importURIs.add(anImport.getImportURI());
+			}
+		}
+		return importURIs;
+	}
+}
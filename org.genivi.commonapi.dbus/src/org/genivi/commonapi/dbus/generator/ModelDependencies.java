@@ -0,0 +1,82 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.franca.core.franca.FTypeCollection;
+
+/**
+ * The interfaces and type collections that the elements of a model refer to,
+ * directly or indirectly: base and managed interfaces and the type collections
+ * of the types and constants they use.
+ *
+ * The dependencies of an element are collected once and kept, so an instance
+ * must not outlive the models it was used for.
+ */
+public class ModelDependencies {
+
+	private final Map<FTypeCollection, Set<FTypeCollection>> dependencies = new IdentityHashMap<FTypeCollection, Set<FTypeCollection>>();
+
+	/**
+	 * @return the interfaces and type collections the element refers to,
+	 *         without the element itself
+	 */
+	public Set<FTypeCollection> getDependencies(FTypeCollection element) {
+		Set<FTypeCollection> itsDependencies = dependencies.get(element);
+		if (itsDependencies == null) {
+			itsDependencies = new LinkedHashSet<FTypeCollection>();
+			List<FTypeCollection> todo = new LinkedList<FTypeCollection>();
+			todo.add(element);
+			while (!todo.isEmpty()) {
+				FTypeCollection itsElement = todo.remove(0);
+				List<EObject> itsObjects = new ArrayList<EObject>();
+				itsObjects.add(itsElement);
+				for (Iterator<EObject> it = itsElement.eAllContents(); it.hasNext();) {
+					itsObjects.add(it.next());
+				}
+				for (EObject itsObject : itsObjects) {
+					for (EObject itsTarget : itsObject.eCrossReferences()) {
+						FTypeCollection itsDependency = getTypeCollection(itsTarget);
+						if (itsDependency != null && itsDependency != element && itsDependencies.add(itsDependency)) {
+							todo.add(itsDependency);
+						}
+					}
+				}
+			}
+			dependencies.put(element, itsDependencies);
+		}
+		return itsDependencies;
+	}
+
+	/**
+	 * @return the element followed by the interfaces and type collections it
+	 *         refers to
+	 */
+	public Set<FTypeCollection> getClosure(FTypeCollection element) {
+		Set<FTypeCollection> itsClosure = new LinkedHashSet<FTypeCollection>();
+		if (element != null) {
+			itsClosure.add(element);
+			itsClosure.addAll(getDependencies(element));
+		}
+		return itsClosure;
+	}
+
+	private static FTypeCollection getTypeCollection(EObject object) {
+		EObject itsObject = object;
+		while (itsObject != null && !(itsObject instanceof FTypeCollection)) {
+			itsObject = itsObject.eContainer();
+		}
+		return (FTypeCollection) itsObject;
+	}
+}
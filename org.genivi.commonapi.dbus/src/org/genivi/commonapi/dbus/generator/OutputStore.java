@@ -0,0 +1,303 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.genivi.commonapi.dbus.preferences.PreferenceConstantsDBus;
+
+/**
+ * Content-addressed store of generated files that can be shared by several
+ * checkouts, developer machines and build agents, e.g. on a network drive.
+ *
+ * An entry maps the key of a generation, i.e. a hash of the contents of the
+ * models and deployments it read, the generator version and the preferences
+ * that influence the generated code, to the files it generated. Files are kept
+ * by the hash of their content, so identical files of different entries are
+ * stored once. Entries and files are written to temporary files first and
+ * renamed, so that concurrent writers never expose partial content. Nothing in
+ * the store depends on the location of the models or the output directories:
+ * the files are replayed with their name relative to their output
+ * configuration.
+ *
+ * <pre>
+ * store/entries/&lt;key&gt;          one line per file: output configuration, name, content hash
+ * store/objects/&lt;xx&gt;/&lt;hash&gt;   the content of a file
+ * </pre>
+ */
+public class OutputStore {
+
+	/**
+	 * A generated file of an entry.
+	 */
+	public static class StoredFile {
+		private final String outputConfiguration;
+		private final String fileName;
+		private final String hash;
+
+		public StoredFile(String outputConfiguration, String fileName, String hash) {
+			this.outputConfiguration = outputConfiguration;
+			this.fileName = fileName;
+			this.hash = hash;
+		}
+
+		public String getOutputConfiguration() {
+			return outputConfiguration;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+	}
+
+	/**
+	 * The preferences that influence the content of the generated code. Unlike
+	 * the manifest of incremental builds, the key does not include the output
+	 * directories.
+	 */
+	static final String[] CODE_PREFERENCES = {
+			PreferenceConstantsDBus.P_LICENSE_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_COMMON_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_PROXY_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_STUB_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_CODE_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_DEPENDENCIES_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_SYNC_CALLS_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_STATIC_DISPATCH_DBUS,
+			PreferenceConstantsDBus.P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS };
+
+	private static final Map<String, OutputStore> stores = new HashMap<String, OutputStore>();
+
+	private final File entries;
+	private final File objects;
+	private final AtomicInteger restored = new AtomicInteger();
+	private final AtomicInteger stored = new AtomicInteger();
+
+	private OutputStore(File directory) {
+		entries = new File(directory, "entries");
+		objects = new File(directory, "objects");
+	}
+
+	/**
+	 * Get the store in the given directory. All generator instances share the
+	 * same store object per directory.
+	 */
+	public static synchronized OutputStore getInstance(String directory) {
+		File itsDirectory = new File(directory).getAbsoluteFile();
+		OutputStore store = stores.get(itsDirectory.getPath());
+		if (store == null) {
+			store = new OutputStore(itsDirectory);
+			stores.put(itsDirectory.getPath(), store);
+		}
+		return store;
+	}
+
+	/**
+	 * Compute the key of a generation.
+	 *
+	 * @param model
+	 *            the URI of the input
+	 * @param models
+	 *            the URIs of the input and all its (transitive) imports
+	 * @param version
+	 *            the generator version
+	 * @param preferences
+	 *            the current preference values
+	 */
+	public String computeKey(String model, Collection<String> models, String version,
+			Map<String, String> preferences) {
+		StringBuilder itsInput = new StringBuilder();
+		itsInput.append("version=").append(version).append('\n');
+		for (String preference : CODE_PREFERENCES) {
+			itsInput.append(preference).append('=').append(preferences.get(preference)).append('\n');
+		}
+		// The imports are identified by their content only, as they may be
+		// located elsewhere in another checkout
+		String itsName = model.substring(model.lastIndexOf('/') + 1);
+		itsInput.append("input=").append(itsName).append('=').append(getContentHash(model)).append('\n');
+		TreeSet<String> itsHashes = new TreeSet<String>();
+		for (String itsModel : models) {
+			itsHashes.add(getContentHash(itsModel));
+		}
+		for (String itsHash : itsHashes) {
+			itsInput.append("import=").append(itsHash).append('\n');
+		}
+		return hash(itsInput.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the files of the entry, or null if there is no entry with the
+	 *         key or the content of one of its files is missing
+	 */
+	public List<StoredFile> getEntry(String key) {
+		File itsFile = new File(entries, key);
+		if (!itsFile.isFile()) {
+			return null;
+		}
+		List<StoredFile> itsFiles = new ArrayList<StoredFile>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(itsFile), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length != 3 || !getObject(parts[2]).isFile()) {
+					return null;
+				}
+				itsFiles.add(new StoredFile(parts[0], parts[1], parts[2]));
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return itsFiles;
+	}
+
+	/**
+	 * Read the contents of the files of an entry.
+	 *
+	 * @return the contents in the order of the files, or null if one of them
+	 *         cannot be read
+	 */
+	public List<String> getContents(List<StoredFile> files) {
+		List<String> itsContents = new ArrayList<String>(files.size());
+		try {
+			for (StoredFile itsFile : files) {
+				itsContents.add(new String(Files.readAllBytes(getObject(itsFile.getHash()).toPath()),
+						StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		restored.incrementAndGet();
+		return itsContents;
+	}
+
+	/**
+	 * Add an entry. An existing entry with the same key is replaced.
+	 */
+	public void putEntry(String key, Collection<StoredFile> files) throws IOException {
+		StringBuilder itsContent = new StringBuilder();
+		for (StoredFile itsFile : files) {
+			itsContent.append(itsFile.getOutputConfiguration()).append('\t')
+					.append(itsFile.getFileName()).append('\t')
+					.append(itsFile.getHash()).append('\n');
+		}
+		write(new File(entries, key), itsContent.toString().getBytes(StandardCharsets.UTF_8));
+		stored.incrementAndGet();
+	}
+
+	/**
+	 * Add the content of a file.
+	 *
+	 * @return the hash of the content
+	 */
+	public String putObject(CharSequence contents) throws IOException {
+		byte[] itsData = contents.toString().getBytes(StandardCharsets.UTF_8);
+		String itsHash = hash(itsData);
+		File itsObject = getObject(itsHash);
+		if (!itsObject.isFile()) {
+			write(itsObject, itsData);
+		}
+		return itsHash;
+	}
+
+	/**
+	 * @return the number of generations that were restored from the store
+	 */
+	public int getRestored() {
+		return restored.get();
+	}
+
+	/**
+	 * @return the number of generations that were added to the store
+	 */
+	public int getStored() {
+		return stored.get();
+	}
+
+	public void resetStatistics() {
+		restored.set(0);
+		stored.set(0);
+	}
+
+	private File getObject(String hash) {
+		return new File(new File(objects, hash.substring(0, 2)), hash);
+	}
+
+	private static void write(File file, byte[] data) throws IOException {
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		File itsTemporary = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (OutputStream out = new FileOutputStream(itsTemporary)) {
+				out.write(data);
+			}
+			Files.move(itsTemporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			itsTemporary.delete();
+		}
+	}
+
+	private static String getContentHash(String model) {
+		try (InputStream in = URIConverter.INSTANCE.createInputStream(URI.createURI(model))) {
+			MessageDigest digest = createDigest();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, length);
+			}
+			return toHex(digest.digest());
+		} catch (IOException e) {
+			return "missing";
+		}
+	}
+
+	private static String hash(byte[] data) {
+		return toHex(createDigest().digest(data));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder itsHex = new StringBuilder();
+		for (byte b : bytes) {
+			itsHex.append(String.format("%02x", b));
+		}
+		return itsHex.toString();
+	}
+}
@@ -0,0 +1,49 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.generator.IFileSystemAccess;
+import org.eclipse.xtext.generator.IFileSystemAccessExtension2;
+
+/**
+ * File system access that does not write anything. It resolves the locations
+ * of the files like the file system access it wraps, so that the files a
+ * generation would produce can be recorded (see RecordingFileSystemAccess)
+ * without producing them.
+ */
+public class PlanningFileSystemAccess implements IFileSystemAccess, IFileSystemAccessExtension2 {
+
+	private final IFileSystemAccess delegate;
+
+	public PlanningFileSystemAccess(IFileSystemAccess delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void generateFile(String fileName, CharSequence contents) {
+	}
+
+	@Override
+	public void generateFile(String fileName, String outputConfigurationName, CharSequence contents) {
+	}
+
+	@Override
+	public void deleteFile(String fileName) {
+	}
+
+	@Override
+	public URI getURI(String path, String outputConfiguration) {
+		if (delegate instanceof IFileSystemAccessExtension2) {
+			return ((IFileSystemAccessExtension2) delegate).getURI(path, outputConfiguration);
+		}
+		return null;
+	}
+
+	@Override
+	public URI getURI(String path) {
+		return getURI(path, DEFAULT_OUTPUT);
+	}
+}
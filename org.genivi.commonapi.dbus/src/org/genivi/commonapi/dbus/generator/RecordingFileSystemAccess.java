@@ -0,0 +1,100 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.xtext.generator.IFileSystemAccess;
+import org.eclipse.xtext.generator.IFileSystemAccessExtension2;
+import org.genivi.commonapi.dbus.generator.OutputStore.StoredFile;
+
+/**
+ * File system access that forwards to another one and remembers the local
+ * paths of all files that were generated through it. If an output store is
+ * given, the contents of the files are added to the store as well.
+ */
+public class RecordingFileSystemAccess implements IFileSystemAccess, IFileSystemAccessExtension2 {
+
+	private final IFileSystemAccess delegate;
+	private final Set<String> files = new LinkedHashSet<String>();
+	private final OutputStore store;
+	private List<StoredFile> storedFiles = new ArrayList<StoredFile>();
+
+	public RecordingFileSystemAccess(IFileSystemAccess delegate) {
+		this(delegate, null);
+	}
+
+	public RecordingFileSystemAccess(IFileSystemAccess delegate, OutputStore store) {
+		this.delegate = delegate;
+		this.store = store;
+	}
+
+	@Override
+	public void generateFile(String fileName, CharSequence contents) {
+		generateFile(fileName, DEFAULT_OUTPUT, contents);
+	}
+
+	@Override
+	public void generateFile(String fileName, String outputConfigurationName, CharSequence contents) {
+		try (GenerationProfile.Measurement measurement = GenerationProfile.start("write", null)) {
+			delegate.generateFile(fileName, outputConfigurationName, contents);
+		}
+		record(fileName, outputConfigurationName);
+		if (store != null && storedFiles != null) {
+			try {
+				storedFiles.add(new StoredFile(outputConfigurationName, fileName, store.putObject(contents)));
+			} catch (IOException e) {
+				// the generation does not depend on the store
+				storedFiles = null;
+			}
+		}
+	}
+
+	@Override
+	public void deleteFile(String fileName) {
+		delegate.deleteFile(fileName);
+	}
+
+	@Override
+	public URI getURI(String path, String outputConfiguration) {
+		if (delegate instanceof IFileSystemAccessExtension2) {
+			return ((IFileSystemAccessExtension2) delegate).getURI(path, outputConfiguration);
+		}
+		return null;
+	}
+
+	@Override
+	public URI getURI(String path) {
+		return getURI(path, DEFAULT_OUTPUT);
+	}
+
+	/**
+	 * The absolute paths of the generated files. Files that are not written to
+	 * the local file system (e.g. into an Eclipse workspace) are not recorded.
+	 */
+	public Set<String> getFiles() {
+		return files;
+	}
+
+	/**
+	 * The files that were added to the output store, or null if there is no
+	 * store or adding a file failed.
+	 */
+	public List<StoredFile> getStoredFiles() {
+		return (store != null ? storedFiles : null);
+	}
+
+	private void record(String fileName, String outputConfigurationName) {
+		URI uri = getURI(fileName, outputConfigurationName);
+		if (uri != null && uri.isFile()) {
+			files.add(uri.toFileString());
+		}
+	}
+}
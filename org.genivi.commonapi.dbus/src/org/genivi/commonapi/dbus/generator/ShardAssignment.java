@@ -0,0 +1,166 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.emf.ecore.EObject;
+import org.franca.core.franca.FInterface;
+import org.franca.core.franca.FModel;
+import org.franca.core.franca.FTypeCollection;
+import org.franca.core.franca.FVersion;
+
+/**
+ * Assignment of the interfaces and type collections of a generation to one of
+ * several shards, e.g. to distribute the generation over several build nodes.
+ *
+ * All code of an element is generated by the shard the element is assigned
+ * to, so that the outputs of all shards together equal the output of a single
+ * run. The assignment only depends on the qualified names and the sizes of
+ * the elements: they are distributed largest first, each to the shard with
+ * the least weight so far. Elements that were not known when the assignment
+ * was made are assigned by the hash of their name.
+ */
+public class ShardAssignment {
+
+	private final int shard;
+	private final int count;
+	private final Map<String, Integer> shards = new HashMap<String, Integer>();
+	private int elements = 0;
+	private long weight = 0;
+	private long totalWeight = 0;
+
+	/**
+	 * @param shard
+	 *            the shard of this run, from 1 to count
+	 * @param count
+	 *            the number of shards
+	 * @param elements
+	 *            the interfaces and type collections of all inputs
+	 */
+	public ShardAssignment(int shard, int count, Collection<? extends FTypeCollection> elements) {
+		if (count < 1 || shard < 1 || shard > count) {
+			throw new IllegalArgumentException("Invalid shard " + shard + "/" + count);
+		}
+		this.shard = shard;
+		this.count = count;
+
+		// the same element may be loaded several times
+		Map<String, Integer> weights = new TreeMap<String, Integer>();
+		for (FTypeCollection element : elements) {
+			weights.put(getKey(element), getWeight(element));
+		}
+		List<Map.Entry<String, Integer>> sorted = new ArrayList<Map.Entry<String, Integer>>(weights.entrySet());
+		// stable: equal weights keep the order of their names
+		sorted.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+		long[] loads = new long[count];
+		for (Map.Entry<String, Integer> entry : sorted) {
+			int lightest = 0;
+			for (int i = 1; i < count; i++) {
+				if (loads[i] < loads[lightest]) {
+					lightest = i;
+				}
+			}
+			loads[lightest] += entry.getValue();
+			shards.put(entry.getKey(), lightest + 1);
+			totalWeight += entry.getValue();
+			if (lightest + 1 == shard) {
+				this.elements++;
+				weight += entry.getValue();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the code of the element is generated by this shard
+	 */
+	public boolean isAssigned(EObject element) {
+		if (!(element instanceof FTypeCollection)) {
+			return true;
+		}
+		String key = getKey((FTypeCollection) element);
+		Integer itsShard = shards.get(key);
+		if (itsShard == null) {
+			itsShard = Math.floorMod(key.hashCode(), count) + 1;
+		}
+		return itsShard == shard;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of elements assigned to this shard
+	 */
+	public int getElements() {
+		return elements;
+	}
+
+	/**
+	 * @return the number of elements of all shards
+	 */
+	public int getTotalElements() {
+		return shards.size();
+	}
+
+	/**
+	 * @return the weight of the elements assigned to this shard
+	 */
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the weight of the elements of all shards
+	 */
+	public long getTotalWeight() {
+		return totalWeight;
+	}
+
+	/**
+	 * The qualified name and version of an element. Unlike its URI, the key
+	 * does not depend on the location of the model files.
+	 */
+	public static String getKey(FTypeCollection element) {
+		StringBuilder key = new StringBuilder();
+		if (element.eContainer() instanceof FModel) {
+			key.append(((FModel) element.eContainer()).getName()).append('.');
+		}
+		key.append(element.getName() != null ? element.getName() : "");
+		FVersion version = element.getVersion();
+		if (version != null) {
+			key.append(':').append(version.getMajor()).append('.').append(version.getMinor());
+		}
+		if (element instanceof FInterface) {
+			key.append(":interface");
+		}
+		return key.toString();
+	}
+
+	/**
+	 * The size of an element: one for the element itself plus its methods,
+	 * attributes and broadcasts, or the types of a type collection.
+	 */
+	public static int getWeight(FTypeCollection element) {
+		int itsWeight = 1 + element.getTypes().size();
+		if (element instanceof FInterface) {
+			FInterface itsInterface = (FInterface) element;
+			itsWeight += itsInterface.getMethods().size() + itsInterface.getAttributes().size()
+					+ itsInterface.getBroadcasts().size();
+		}
+		return itsWeight;
+	}
+}
@@ -0,0 +1,122 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.xtext.generator.IFileSystemAccess;
+import org.eclipse.xtext.generator.IFileSystemAccessExtension2;
+
+/**
+ * File system access that only writes a generated file if its content differs
+ * from the file that already exists. Unchanged files keep their modification
+ * time, so build systems do not recompile the code that includes them.
+ */
+public class WriteIfChangedFileSystemAccess implements IFileSystemAccess, IFileSystemAccessExtension2 {
+
+	private final IFileSystemAccess delegate;
+	private final List<String> unchangedFiles = new ArrayList<String>();
+	private int written = 0;
+	private int skipped = 0;
+
+	public WriteIfChangedFileSystemAccess(IFileSystemAccess delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void generateFile(String fileName, CharSequence contents) {
+		generateFile(fileName, DEFAULT_OUTPUT, contents);
+	}
+
+	@Override
+	public void generateFile(String fileName, String outputConfigurationName, CharSequence contents) {
+		if (delegate instanceof IFileSystemAccessExtension2
+				&& hasSameContents(getURI(fileName, outputConfigurationName), contents)) {
+			synchronized (this) {
+				skipped++;
+				unchangedFiles.add(fileName);
+			}
+			return;
+		}
+		delegate.generateFile(fileName, outputConfigurationName, contents);
+		synchronized (this) {
+			written++;
+		}
+	}
+
+	@Override
+	public void deleteFile(String fileName) {
+		delegate.deleteFile(fileName);
+	}
+
+	@Override
+	public URI getURI(String path, String outputConfiguration) {
+		return ((IFileSystemAccessExtension2) delegate).getURI(path, outputConfiguration);
+	}
+
+	@Override
+	public URI getURI(String path) {
+		return ((IFileSystemAccessExtension2) delegate).getURI(path);
+	}
+
+	public synchronized int getWritten() {
+		return written;
+	}
+
+	public synchronized int getSkipped() {
+		return skipped;
+	}
+
+	public synchronized List<String> getUnchangedFiles() {
+		return new ArrayList<String>(unchangedFiles);
+	}
+
+	public synchronized void reset() {
+		written = 0;
+		skipped = 0;
+		unchangedFiles.clear();
+	}
+
+	/**
+	 * Compare the given content with the existing file. The sizes are compared
+	 * first, then the bytes.
+	 *
+	 * @param uri
+	 *            the location of the generated file
+	 * @param contents
+	 *            the new content
+	 * @return true if the file exists and has exactly the given content
+	 */
+	public static boolean hasSameContents(URI uri, CharSequence contents) {
+		if (uri == null || !URIConverter.INSTANCE.exists(uri, null)) {
+			return false;
+		}
+		byte[] newBytes = contents.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] oldBytes;
+		try (InputStream in = URIConverter.INSTANCE.createInputStream(uri)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(newBytes.length);
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) > 0) {
+				out.write(buffer, 0, length);
+				if (out.size() > newBytes.length) {
+					return false;
+				}
+			}
+			oldBytes = out.toByteArray();
+		} catch (IOException e) {
+			return false;
+		}
+		return Arrays.equals(newBytes, oldBytes);
+	}
+}
@@ -32,6 +32,14 @@ public class FPreferencesDBus {
 	        preferences.clear();
 	    }
 
+	    /**
+	     * Restore the default values of the command line
+	     */
+	    public void resetToDefaults(){
+	        preferences.clear();
+	        clidefPreferences();
+	    }
+
 	    public static FPreferencesDBus getInstance() {
 	        if (instance == null) {
 	            instance = new FPreferencesDBus();
@@ -80,6 +88,18 @@ public class FPreferencesDBus {
 	        if (!preferences.containsKey(PreferenceConstantsDBus.P_GENERATE_SYNC_CALLS_DBUS)) {
 	            preferences.put(PreferenceConstantsDBus.P_GENERATE_SYNC_CALLS_DBUS, "true");    
 	        }
+	        if (!preferences.containsKey(PreferenceConstantsDBus.P_GENERATE_INCREMENTAL_DBUS)) {
+	            preferences.put(PreferenceConstantsDBus.P_GENERATE_INCREMENTAL_DBUS, "false");
+	        }
+	        if (!preferences.containsKey(PreferenceConstantsDBus.P_OUTPUT_STORE_DBUS)) {
+	            preferences.put(PreferenceConstantsDBus.P_OUTPUT_STORE_DBUS, "");
+	        }
+	        if (!preferences.containsKey(PreferenceConstantsDBus.P_GENERATE_STATIC_DISPATCH_DBUS)) {
+	            preferences.put(PreferenceConstantsDBus.P_GENERATE_STATIC_DISPATCH_DBUS, "false");
+	        }
+	        if (!preferences.containsKey(PreferenceConstantsDBus.P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS)) {
+	            preferences.put(PreferenceConstantsDBus.P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS, "false");
+	        }
 	    }
 
 	    public String getPreference(String preferencename, String defaultValue) {
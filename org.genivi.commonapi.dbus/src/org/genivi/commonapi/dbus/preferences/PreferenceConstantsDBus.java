@@ -27,4 +27,8 @@ public interface PreferenceConstantsDBus extends PreferenceConstants
 	public static final String P_GENERATE_DEPENDENCIES_DBUS = P_GENERATE_DEPENDENCIES;
 	public static final String P_GENERATE_SYNC_CALLS_DBUS = P_GENERATE_SYNC_CALLS;
 	public static final String P_ENABLE_DBUS_VALIDATOR  = "enableDBusValidator";
+	public static final String P_GENERATE_INCREMENTAL_DBUS = "generateIncrementalDBus";
+	public static final String P_OUTPUT_STORE_DBUS      = "outputStoreDBus";
+	public static final String P_GENERATE_STATIC_DISPATCH_DBUS = "generateStaticDispatchDBus";
+	public static final String P_GENERATE_SUBSCRIBER_SNAPSHOTS_DBUS = "generateSubscriberSnapshotsDBus";
 }
@@ -7,188 +7,273 @@ package org.genivi.commonapi.dbus.verification;
 import org.franca.core.franca.impl.FModelImpl;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.Map.Entry;
 
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.franca.core.franca.FInterface;
 import org.franca.core.franca.FModel;
 import org.franca.core.franca.FTypeCollection;
 
+/**
+ * Index of the package, type collection and interface names of all fidl files
+ * below a directory.
+ *
+ * The index is kept between calls and maintained incrementally: when the same
+ * directory is requested again, only files that were added, changed (by
+ * modification time or size) or deleted are processed. Files are not parsed
+ * into EMF models; only the names of their top level elements are scanned
+ * (see FidlHeader).
+ * fastAllInfo (name -> package -> paths) and the sorted package index are
+ * updated together with allInfo and never rebuilt from scratch.
+ */
 public class AllInfoMapsBuilder {
 
     private String path = "";
     public Map<String, Triple<String, ArrayList<String>, ArrayList<String>>> allInfo = new HashMap<String, Triple<String, ArrayList<String>, ArrayList<String>>>();
-    private Triple<String, ArrayList<String>, ArrayList<String>> infoTriple;
-    private ResourceSet resourceSet = null;
     public Map<String, HashMap<String, HashSet<String>>> fastAllInfo = new HashMap<String, HashMap<String, HashSet<String>>>();
+    private Map<String, String> stamps = new HashMap<String, String>();
+    private TreeMap<String, HashSet<String>> packageIndex = new TreeMap<String, HashSet<String>>();
 
+    /**
+     * Index all fidl files below the given directory. If the directory was
+     * indexed before, the index is only brought up to date.
+     *
+     * @return true if the directory was indexed from scratch
+     */
     public boolean buildAllInfos(String path) {
         if (this.path.equals(path)) {
+            refresh();
             return false;
         }
-        resourceSet = new ResourceSetImpl();
         this.path = path;
-        allInfo.clear();
-        buildAllInfo(path);
-        fastAllInfo.clear();
-        buildFastAllInfo();
+        clear();
+        refresh();
         return true;
-
     }
 
+    /**
+     * Index the given models. Entries of models that are not contained in the
+     * set any more are removed.
+     */
     public void buildAllInfo(Set<EObject> resourceSet) {
-        allInfo.clear();
-        buildAllInfos(resourceSet);
-        fastAllInfo.clear();
-        buildFastAllInfo();
+        buildAllInfo(resourceSet, Collections.<String, Triple<String, ArrayList<String>, ArrayList<String>>>emptyMap());
     }
 
-    private void buildAllInfos(Set<EObject> ressourceSet) {
-        for (EObject model : ressourceSet) {
-            ArrayList<String> typeCollectionList = new ArrayList<String>();
-            ArrayList<String> interfaceList = new ArrayList<String>();
+    /**
+     * Index the given models and the given entries of files that were not
+     * loaded as models. All other entries are removed.
+     */
+    public void buildAllInfo(Set<EObject> resourceSet, Map<String, Triple<String, ArrayList<String>, ArrayList<String>>> headers) {
+        Set<String> paths = new HashSet<String>(headers.keySet());
+        for (Map.Entry<String, Triple<String, ArrayList<String>, ArrayList<String>>> entry : headers.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        for (EObject model : resourceSet) {
             if (model != null) {
-                for (EObject e : model.eContents()) {
-                    if (e instanceof FTypeCollection
-                            && !(e instanceof FInterface)) {
-                        typeCollectionList.add(((FTypeCollection) e).getName());
-                    }
-                    if (e instanceof FInterface) {
-                        interfaceList.add(((FInterface) e).getName());
-                    }
-                }
-                infoTriple = new Triple<String, ArrayList<String>, ArrayList<String>>(
-                        ((FModelImpl) model).getName(), typeCollectionList,
-                        interfaceList);
-                allInfo.put(((FModel) model).eResource().getURI().toString(),
-                        infoTriple);
+                String itsPath = ((FModel) model).eResource().getURI().toString();
+                paths.add(itsPath);
+                put(itsPath, createTriple(model));
+            }
+        }
+        Set<String> indexed = new HashSet<String>(allInfo.keySet());
+        indexed.addAll(stamps.keySet());
+        for (String itsPath : indexed) {
+            if (!paths.contains(itsPath)) {
+                removeAllInfo(itsPath);
             }
         }
     }
 
-    private void buildFastAllInfo() {
-
-        for (Entry<String, Triple<String, ArrayList<String>, ArrayList<String>>> entry : allInfo
-                .entrySet()) {
-            addNames(entry, entry.getValue().interfaceList);
-            addNames(entry, entry.getValue().typeCollectionList);
+    /**
+     * Replace the entry of a single model, e.g. after it was changed in an
+     * editor.
+     */
+    public void updateAllInfo(EObject model, String absolutPath) {
+        if (model != null) {
+            put(absolutPath, createTriple(model));
+            stamps.put(absolutPath, stamp(new File(absolutPath)));
         }
     }
 
-    private void addNames(
-            Entry<String, Triple<String, ArrayList<String>, ArrayList<String>>> entry,
-            ArrayList<String> arrayList) {
-        for (String name : arrayList) {
-            HashMap<String, HashSet<String>> hilfMap = new HashMap<String, HashSet<String>>();
-            HashSet<String> hilfSet = new HashSet<String>();
-            if (fastAllInfo.containsKey(name)) {
-                hilfMap = fastAllInfo.get(name);
-                if (hilfMap.containsKey(entry.getValue().packageName)) {
-                    hilfSet = hilfMap.get(entry.getValue().packageName);
-                    hilfSet.add(entry.getKey());
-                    hilfMap.put(entry.getValue().packageName, hilfSet);
-                    fastAllInfo.put(name, hilfMap);
-                }
+    /**
+     * Remove the entry of a deleted file.
+     */
+    public void removeAllInfo(String absolutPath) {
+        remove(absolutPath);
+        stamps.remove(absolutPath);
+    }
+
+    /**
+     * Bring the index of the current directory up to date with the file
+     * system.
+     */
+    public void refresh() {
+        if (path.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<String>();
+        scan(new File(path), existing);
+        for (String itsPath : new ArrayList<String>(stamps.keySet())) {
+            if (!existing.contains(itsPath)) {
+                removeAllInfo(itsPath);
             }
-            hilfSet.add(entry.getKey());
-            hilfMap.put(entry.getValue().packageName, hilfSet);
-            fastAllInfo.put(name, hilfMap);
         }
     }
 
-    public void updateAllInfo(EObject model, String absolutPath) {
-        ArrayList<String> typeCollectionList = new ArrayList<String>();
-        ArrayList<String> interfaceList = new ArrayList<String>();
-        if (model != null) {
-            for (EObject e : model.eContents()) {
-                if (e instanceof FTypeCollection && !(e instanceof FInterface)) {
-                    typeCollectionList.add(((FTypeCollection) e).getName());
-                }
-                if (e instanceof FInterface) {
-                    interfaceList.add(((FInterface) e).getName());
-                }
+    /**
+     * Find the files whose package name starts with the given prefix. The
+     * lookup takes logarithmic time in the number of packages.
+     *
+     * @return the matching package names mapped to the paths of their files
+     */
+    public SortedMap<String, HashSet<String>> getPackagesStartingWith(String prefix) {
+        SortedMap<String, HashSet<String>> packages = new TreeMap<String, HashSet<String>>();
+        for (Map.Entry<String, HashSet<String>> entry : packageIndex.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
             }
-            infoTriple = new Triple<String, ArrayList<String>, ArrayList<String>>(
-                    ((FModelImpl) model).getName(), typeCollectionList,
-                    interfaceList);
-            allInfo.put(absolutPath, infoTriple);
+            packages.put(entry.getKey(), entry.getValue());
         }
-        fastAllInfo.clear();
-        buildFastAllInfo();
+        return packages;
     }
 
-    private void buildAllInfo(String path) {
+    private void clear() {
+        allInfo.clear();
+        fastAllInfo.clear();
+        stamps.clear();
+        packageIndex.clear();
+    }
 
-        File folder = new File(path);
-        for (File file : folder.listFiles()) {
+    private void scan(File folder, Set<String> existing) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
             if (file.isDirectory()) {
                 String directoryName = file.getName();
                 if (!(directoryName.equals("bin") || directoryName.equals(".settings")))
-                    buildAllInfo(path + "/" + directoryName);
+                    scan(file, existing);
             }
-            if (file.isFile()) {
-                if (file.getName().endsWith(".fidl")) {
-                    String cwd = "file:/" + path;
-                    EObject model = buildResource(file.getName(), cwd);
-                    ArrayList<String> typeCollectionList = new ArrayList<String>();
-                    ArrayList<String> interfaceList = new ArrayList<String>();
-                    if (model != null) {
-                        for (EObject e : model.eContents()) {
-                            if (e instanceof FTypeCollection
-                                    && !(e instanceof FInterface)) {
-                                typeCollectionList.add(((FTypeCollection) e)
-                                        .getName());
-                            }
-                            if (e instanceof FInterface) {
-                                interfaceList.add(((FInterface) e).getName());
-                            }
-                        }
-                        infoTriple = new Triple<String, ArrayList<String>, ArrayList<String>>(
-                                ((FModelImpl) model).getName(),
-                                typeCollectionList, interfaceList);
-                        allInfo.put(file.getAbsolutePath().replace("\\", "/"),
-                                infoTriple);
+            if (file.isFile() && file.getName().endsWith(".fidl")) {
+                String itsPath = file.getAbsolutePath().replace("\\", "/");
+                existing.add(itsPath);
+                String itsStamp = stamp(file);
+                if (!itsStamp.equals(stamps.get(itsPath))) {
+                    Triple<String, ArrayList<String>, ArrayList<String>> itsTriple = readHeader(file);
+                    if (itsTriple != null) {
+                        put(itsPath, itsTriple);
+                    } else {
+                        remove(itsPath);
                     }
+                    stamps.put(itsPath, itsStamp);
                 }
             }
         }
     }
 
-    private EObject buildResource(String filename, String cwd) {
-
-        URI fileURI = normalizeURI(URI.createURI(filename));
-        URI cwdURI = normalizeURI(URI.createURI(cwd));
-        Resource resource = null;
-
-        if (cwd != null && cwd.length() > 0) {
-            fileURI = URI.createURI((cwdURI.toString() + "/" + fileURI
-                    .toString()).replaceAll("/+", "/"));
+    private static Triple<String, ArrayList<String>, ArrayList<String>> createTriple(EObject model) {
+        ArrayList<String> typeCollectionList = new ArrayList<String>();
+        ArrayList<String> interfaceList = new ArrayList<String>();
+        for (EObject e : model.eContents()) {
+            if (e instanceof FTypeCollection && !(e instanceof FInterface)) {
+                typeCollectionList.add(((FTypeCollection) e).getName());
+            }
+            if (e instanceof FInterface) {
+                interfaceList.add(((FInterface) e).getName());
+            }
         }
+        return new Triple<String, ArrayList<String>, ArrayList<String>>(
+                ((FModelImpl) model).getName(), typeCollectionList, interfaceList);
+    }
 
-        try {
+    /**
+     * Replace the entry of a path in allInfo and fastAllInfo.
+     */
+    private void put(String itsPath, Triple<String, ArrayList<String>, ArrayList<String>> triple) {
+        remove(itsPath);
+        allInfo.put(itsPath, triple);
+        if (triple.packageName != null) {
+            HashSet<String> paths = packageIndex.get(triple.packageName);
+            if (paths == null) {
+                paths = new HashSet<String>();
+                packageIndex.put(triple.packageName, paths);
+            }
+            paths.add(itsPath);
+        }
+        addNames(itsPath, triple.packageName, triple.interfaceList);
+        addNames(itsPath, triple.packageName, triple.typeCollectionList);
+    }
 
-            resource = resourceSet.getResource(fileURI, true);
-            resource.load(Collections.EMPTY_MAP);
-        } catch (IOException e) {
-            return null;
+    private void remove(String itsPath) {
+        Triple<String, ArrayList<String>, ArrayList<String>> triple = allInfo.remove(itsPath);
+        if (triple != null) {
+            HashSet<String> paths = (triple.packageName != null ? packageIndex.get(triple.packageName) : null);
+            if (paths != null) {
+                paths.remove(itsPath);
+                if (paths.isEmpty()) {
+                    packageIndex.remove(triple.packageName);
+                }
+            }
+            removeNames(itsPath, triple.packageName, triple.interfaceList);
+            removeNames(itsPath, triple.packageName, triple.typeCollectionList);
         }
-        try {
-            return resource.getContents().get(0);
-        } catch (Exception e) {
-            return null;
+    }
+
+    private void addNames(String itsPath, String packageName, ArrayList<String> names) {
+        for (String name : names) {
+            HashMap<String, HashSet<String>> packages = fastAllInfo.get(name);
+            if (packages == null) {
+                packages = new HashMap<String, HashSet<String>>();
+                fastAllInfo.put(name, packages);
+            }
+            HashSet<String> paths = packages.get(packageName);
+            if (paths == null) {
+                paths = new HashSet<String>();
+                packages.put(packageName, paths);
+            }
+            paths.add(itsPath);
         }
     }
 
-    private static URI normalizeURI(URI path) {
-        if (path.isFile()) {
-            return URI.createURI(path.toString().replaceAll("\\\\", "/"));
+    private void removeNames(String itsPath, String packageName, ArrayList<String> names) {
+        for (String name : names) {
+            HashMap<String, HashSet<String>> packages = fastAllInfo.get(name);
+            if (packages == null) {
+                continue;
+            }
+            HashSet<String> paths = packages.get(packageName);
+            if (paths != null) {
+                paths.remove(itsPath);
+                if (paths.isEmpty()) {
+                    packages.remove(packageName);
+                }
+            }
+            if (packages.isEmpty()) {
+                fastAllInfo.remove(name);
+            }
         }
-        return path;
     }
 
+    private static String stamp(File file) {
+        return file.lastModified() + ":" + file.length();
+    }
+
+    /**
+     * Scan the package name and the names of the top level type collections
+     * and interfaces of a fidl file.
+     *
+     * @return the names or null, if the file cannot be read or does not
+     *         declare a package
+     */
+    static Triple<String, ArrayList<String>, ArrayList<String>> readHeader(File file) {
+        try {
+            FidlHeader header = FidlHeader.scan(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            return (header != null ? header.toTriple() : null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.verification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The names and imports declared at the top level of a fidl file.
+ *
+ * The file is not parsed into an EMF model. A simple scanner collects the
+ * package name, the import URIs and the names of the type collections and
+ * interfaces, skipping comments, structured comments and string literals.
+ */
+public class FidlHeader {
+
+    public final String packageName;
+    public final ArrayList<String> typeCollectionList;
+    public final ArrayList<String> interfaceList;
+    public final List<String> importURIs;
+
+    private FidlHeader(String packageName, ArrayList<String> typeCollectionList, ArrayList<String> interfaceList,
+            List<String> importURIs) {
+        this.packageName = packageName;
+        this.typeCollectionList = typeCollectionList;
+        this.interfaceList = interfaceList;
+        this.importURIs = importURIs;
+    }
+
+    public Triple<String, ArrayList<String>, ArrayList<String>> toTriple() {
+        return new Triple<String, ArrayList<String>, ArrayList<String>>(packageName, typeCollectionList,
+                interfaceList);
+    }
+
+    /**
+     * Scan the content of a fidl file.
+     *
+     * @return the header or null, if the content does not declare a package
+     */
+    public static FidlHeader scan(String content) {
+        String packageName = null;
+        ArrayList<String> typeCollectionList = new ArrayList<String>();
+        ArrayList<String> interfaceList = new ArrayList<String>();
+        List<String> importURIs = new ArrayList<String>();
+
+        int depth = 0;
+        String keyword = null;
+        int i = 0;
+        int length = content.length();
+        while (i < length) {
+            char c = content.charAt(i);
+            if (c == '/' && i + 1 < length && content.charAt(i + 1) == '/') {
+                i = skipTo(content, i + 2, "\n");
+            } else if (c == '/' && i + 1 < length && content.charAt(i + 1) == '*') {
+                i = skipTo(content, i + 2, "*/");
+            } else if (c == '<' && content.startsWith("<**", i)) {
+                i = skipTo(content, i + 3, "**>");
+            } else if (c == '"') {
+                int end = i + 1;
+                while (end < length && content.charAt(end) != '"') {
+                    end += (content.charAt(end) == '\\' ? 2 : 1);
+                }
+                if (depth == 0 && "import".equals(keyword)) {
+                    importURIs.add(content.substring(i + 1, Math.min(end, length)));
+                    keyword = null;
+                }
+                i = end + 1;
+            } else if (c == '{') {
+                if (depth == 0 && "typeCollection".equals(keyword)) {
+                    // anonymous type collection
+                    typeCollectionList.add(null);
+                }
+                keyword = null;
+                depth++;
+                i++;
+            } else if (c == '}') {
+                depth = Math.max(0, depth - 1);
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < length && (Character.isJavaIdentifierPart(content.charAt(end))
+                        || content.charAt(end) == '.' || content.charAt(end) == '*')) {
+                    end++;
+                }
+                String token = content.substring(i, end);
+                if (depth == 0) {
+                    if (keyword == null) {
+                        if (token.equals("package") || token.equals("import") || token.equals("typeCollection")
+                                || token.equals("interface")) {
+                            keyword = token;
+                        }
+                    } else if (keyword.equals("package")) {
+                        packageName = token;
+                        keyword = null;
+                    } else if (keyword.equals("typeCollection")) {
+                        typeCollectionList.add(token);
+                        keyword = null;
+                    } else if (keyword.equals("interface")) {
+                        interfaceList.add(token);
+                        keyword = null;
+                    }
+                    // an import keeps its keyword until the URI string
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        if (packageName == null) {
+            return null;
+        }
+        return new FidlHeader(packageName, typeCollectionList, interfaceList, importURIs);
+    }
+
+    private static int skipTo(String content, int from, String end) {
+        int index = content.indexOf(end, from);
+        return (index < 0 ? content.length() : index + end.length());
+    }
+}
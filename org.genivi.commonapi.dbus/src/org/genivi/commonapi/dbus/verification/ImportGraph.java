@@ -0,0 +1,226 @@
+/* Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+   This Source Code Form is subject to the terms of the Mozilla Public
+   License, v. 2.0. If a copy of the MPL was not distributed with this
+   file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+package org.genivi.commonapi.dbus.verification;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Cache of the imports of fidl files and of their transitive closures, shared
+ * by all validations.
+ *
+ * Files are identified by their absolute path. A file is scanned again only if
+ * its modification time or size changed and its content hash differs from the
+ * one that was scanned before. A changed file invalidates exactly the cached
+ * closures that contain it. Files that are not cached yet are scanned in
+ * parallel, one import level at a time.
+ */
+public class ImportGraph {
+
+    private static class Node {
+        final String stamp;
+        final String hash;
+        final FidlHeader header;
+        final HashSet<String> imports;
+
+        Node(String stamp, String hash, FidlHeader header, HashSet<String> imports) {
+            this.stamp = stamp;
+            this.hash = hash;
+            this.header = header;
+            this.imports = imports;
+        }
+    }
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    private final Map<String, Set<String>> closures = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Resolve an import URI like the validator does: relative URIs against
+     * the directory of the importing file, absolute ones without their
+     * device.
+     */
+    public static String resolveImport(String importURI, String directory) {
+        Path importPath = new Path(importURI);
+        if (!importPath.isAbsolute()) {
+            return new Path(directory + "/" + importURI).toString();
+        }
+        return importPath.toString().replaceFirst(importPath.getDevice() + "/", "");
+    }
+
+    /**
+     * Complete an import list that contains the direct imports of the
+     * validated model with the direct imports of all transitively imported
+     * files.
+     *
+     * @param importList
+     *            maps the path of a file to the paths it imports
+     * @return a new map that contains an entry for every reachable file
+     */
+    public HashMap<String, HashSet<String>> buildImportList(Map<String, HashSet<String>> importList) {
+        Set<String> reachable = new HashSet<String>();
+        for (HashSet<String> imports : importList.values()) {
+            for (String importedPath : imports) {
+                reachable.addAll(getClosure(importedPath));
+            }
+        }
+        HashMap<String, HashSet<String>> result = new HashMap<String, HashSet<String>>(importList);
+        for (String path : reachable) {
+            if (!result.containsKey(path)) {
+                result.put(path, new HashSet<String>(getNode(path).imports));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the scanned names of the given files, keyed by the file URI that a
+     * resource loaded from the file would have. Files without a package are
+     * left out.
+     */
+    public Map<String, Triple<String, ArrayList<String>, ArrayList<String>>> getHeaders(Collection<String> paths) {
+        Map<String, Triple<String, ArrayList<String>, ArrayList<String>>> headers = new HashMap<String, Triple<String, ArrayList<String>, ArrayList<String>>>();
+        for (String path : paths) {
+            FidlHeader header = getNode(path).header;
+            if (header != null) {
+                headers.put(("file:/" + path).replaceAll("/+", "/"), header.toTriple());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * @return the given file and all files it imports directly or indirectly
+     */
+    public Set<String> getClosure(String path) {
+        Set<String> closure = closures.get(path);
+        if (closure != null) {
+            // rescanning a changed file drops the closures that contain it
+            for (String closurePath : closure) {
+                getNode(closurePath);
+            }
+            if (closures.get(path) == closure) {
+                return closure;
+            }
+        }
+        closure = new HashSet<String>();
+        closure.add(path);
+        List<String> level = Collections.singletonList(path);
+        while (!level.isEmpty()) {
+            loadAll(level);
+            List<String> next = new ArrayList<String>();
+            for (String levelPath : level) {
+                for (String importedPath : getNode(levelPath).imports) {
+                    if (closure.add(importedPath)) {
+                        next.add(importedPath);
+                    }
+                }
+            }
+            level = next;
+        }
+        closure = Collections.unmodifiableSet(closure);
+        closures.put(path, closure);
+        return closure;
+    }
+
+    /**
+     * Drop all cached files and closures.
+     */
+    public void clear() {
+        nodes.clear();
+        closures.clear();
+    }
+
+    private void loadAll(List<String> paths) {
+        List<String> missing = new ArrayList<String>();
+        for (String path : paths) {
+            if (!nodes.containsKey(path)) {
+                missing.add(path);
+            }
+        }
+        if (missing.size() > 1) {
+            missing.parallelStream().forEach(path -> getNode(path));
+        }
+    }
+
+    /**
+     * Get the scanned file, scanning it if it is not cached or changed.
+     */
+    private Node getNode(String path) {
+        File file = new File(path);
+        String stamp = file.isFile() ? file.lastModified() + ":" + file.length() : "";
+        Node node = nodes.get(path);
+        if (node != null && node.stamp.equals(stamp)) {
+            return node;
+        }
+
+        byte[] content = null;
+        try {
+            if (file.isFile()) {
+                content = Files.readAllBytes(file.toPath());
+            }
+        } catch (IOException e) {
+            content = null;
+        }
+        String hash = (content != null ? hash(content) : "");
+        if (node != null && node.hash.equals(hash)) {
+            // touched, but not changed
+            node = new Node(stamp, hash, node.header, node.imports);
+            nodes.put(path, node);
+            return node;
+        }
+
+        FidlHeader header = (content != null ? FidlHeader.scan(new String(content, StandardCharsets.UTF_8)) : null);
+        HashSet<String> imports = new HashSet<String>();
+        if (header != null) {
+            String directory = path.substring(0, Math.max(0, path.lastIndexOf("/")));
+            for (String importURI : header.importURIs) {
+                imports.add(resolveImport(importURI, directory));
+            }
+        }
+        Node newNode = new Node(stamp, hash, header, imports);
+        nodes.put(path, newNode);
+        if (node != null) {
+            invalidate(path);
+        }
+        return newNode;
+    }
+
+    private void invalidate(String path) {
+        for (Map.Entry<String, Set<String>> entry : closures.entrySet()) {
+            if (entry.getValue().contains(path)) {
+                closures.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder itsHash = new StringBuilder();
+            for (byte b : digest.digest(content)) {
+                itsHash.append(String.format("%02x", b));
+            }
+            return itsHash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(Arrays.hashCode(content));
+        }
+    }
+}
@@ -4,9 +4,6 @@
    file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 package org.genivi.commonapi.dbus.verification;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -21,8 +18,6 @@ import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.xtext.validation.ValidationMessageAcceptor;
 import org.franca.core.dsl.validation.IFrancaExternalValidator;
 import org.franca.core.franca.FArgument;
@@ -58,10 +53,11 @@ public class ValidatorDBus implements IFrancaExternalValidator
     private HashMap<String, HashSet<String>>              importList               = new HashMap<String, HashSet<String>>();
     private AllInfoMapsBuilder                            aimBuilder               = new AllInfoMapsBuilder();
     private Map<String, HashMap<String, HashSet<String>>> fastAllInfo              = new HashMap<String, HashMap<String, HashSet<String>>>();
-    private Boolean                                       hasChanged               = false;
-    private ResourceSet                                   resourceSet;
     private Set<EObject>                                  resourceList             = new HashSet<EObject>();
 
+    // The imports of all files, shared by all validations
+    private static final ImportGraph                      importGraph              = new ImportGraph();
+
     public ValidatorDBus()
     {
         cycleDetector = Guice.createInjector().getInstance(FTypeCycleDetector.class);
@@ -75,7 +71,6 @@ public class ValidatorDBus implements IFrancaExternalValidator
             {
                 return;
             }
-            resourceSet = new ResourceSetImpl();
             Resource res = model.eResource();
             URI uri = res.getURI();
 
@@ -100,7 +95,7 @@ public class ValidatorDBus implements IFrancaExternalValidator
             {
                 String cwd = filePath.removeLastSegments(1).toString();
                 initImportList(model, cwd, filePathString);
-                importList = buildImportList(importList);
+                importList = importGraph.buildImportList(importList);
 
                 for (FTypeCollection fTypeCollection : model.getTypeCollections())
                 {
@@ -134,7 +129,9 @@ public class ValidatorDBus implements IFrancaExternalValidator
                 else
                 {
                     resourceList.add(model);
-                    aimBuilder.buildAllInfo(resourceList);
+                    Set<String> importedFiles = new HashSet<String>(importList.keySet());
+                    importedFiles.remove(filePathString);
+                    aimBuilder.buildAllInfo(resourceList, importGraph.getHeaders(importedFiles));
                 }
 
 
@@ -170,115 +167,11 @@ public class ValidatorDBus implements IFrancaExternalValidator
         HashSet<String> importedFiles = new HashSet<String>();
         for (Import fImport : model.getImports())
         {
-            Path absoluteImportPath = new Path(fImport.getImportURI());
-            if (!absoluteImportPath.isAbsolute())
-            {
-                absoluteImportPath = new Path(cwd + "/" + fImport.getImportURI());
-                importedFiles.add(absoluteImportPath.toString());
-            }
-            else
-            {
-                importedFiles.add(absoluteImportPath.toString().replaceFirst(absoluteImportPath.getDevice() + "/", ""));
-            }
+            importedFiles.add(ImportGraph.resolveImport(fImport.getImportURI(), cwd));
         }
         importList.put(filePath, importedFiles);
     }
 
-    private EObject buildResource(String filename, String cwd)
-    {
-        URI fileURI = normalizeURI(URI.createURI(filename));
-        URI cwdURI = normalizeURI(URI.createURI(cwd));
-        Resource resource = null;
-
-        if (cwd != null && cwd.length() > 0)
-        {
-            fileURI = URI.createURI((cwdURI.toString() + "/" + fileURI.toString()).replaceAll("/+", "/"));
-        }
-
-        try
-        {
-            resource = resourceSet.getResource(fileURI, true);
-            resource.load(Collections.EMPTY_MAP);
-        }
-        catch (RuntimeException e)
-        {
-            return null;
-        }
-        catch (IOException io)
-        {
-            return null;
-        }
-
-        try
-		{
-            return resource.getContents().get(0);
-        }
-        catch (Exception e)
-		{
-            return null;
-        }
-    }
-
-    private static URI normalizeURI(URI path)
-    {
-        if (path.isFile())
-        {
-            return URI.createURI(path.toString().replaceAll("\\\\", "/"));
-        }
-        return path;
-    }
-
-    private HashMap<String, HashSet<String>> buildImportList(HashMap<String, HashSet<String>> rekImportList)
-    {
-        HashMap<String, HashSet<String>> helpMap = new HashMap<String, HashSet<String>>();
-        for (Entry<String, HashSet<String>> entry : rekImportList.entrySet())
-        {
-            for (String importedPath : entry.getValue())
-            {
-                if (!rekImportList.containsKey(importedPath))
-                {
-                    hasChanged = true;
-                    HashSet<String> importedFIDL = new HashSet<String>();
-                    EObject resource = null;
-                    resource = buildResource(importedPath.substring(importedPath.lastIndexOf("/") + 1, importedPath.length()), "file:/"
-                            + importedPath.substring(0, importedPath.lastIndexOf("/") + 1));
-                    if (resource != null)
-                    {
-                        resourceList.add(resource);
-                        for (EObject imp : resource.eContents())
-                        {
-                            if (imp instanceof Import)
-                            {
-                                Path importImportedPath = new Path(((Import) imp).getImportURI());
-                                if (importImportedPath.isAbsolute())
-                                {
-                                    importedFIDL.add(importImportedPath.toString().replaceFirst(importImportedPath.getDevice() + "/", ""));
-                                }
-                                else
-                                {
-                                    importImportedPath = new Path(importedPath.substring(0, importedPath.lastIndexOf("/")) + "/"
-                                            + ((Import) imp).getImportURI());
-                                    importedFIDL.add(importImportedPath.toString());
-                                }
-                            }
-                        }
-                    }
-                    helpMap.put(importedPath, importedFIDL);
-                }
-            }
-        }
-        if (hasChanged)
-        {
-            hasChanged = false;
-            helpMap.putAll(rekImportList);
-            return buildImportList(helpMap);
-        }
-        else
-        {
-            return rekImportList;
-        }
-    }
-
     private void validateTypeCollectionName(FModel model, ValidationMessageAcceptor messageAcceptor, IPath filePath,
             FTypeCollection fTypeCollection)
     {
@@ -349,33 +242,32 @@ public class ValidatorDBus implements IFrancaExternalValidator
         String type = "typeCollection name";
         if (fTypeCollection instanceof FInterface)
             type = "interface name";
-        for (Entry<String, Triple<String, ArrayList<String>, ArrayList<String>>> entry : aimBuilder.allInfo.entrySet())
+        String prefix = model.getName() + "." + fTypeCollection.getName();
+        HashSet<String> importPaths = importList.get(cwd + "/" + fileName);
+        if (importPaths == null)
+        {
+            return;
+        }
+        for (Entry<String, HashSet<String>> entry : aimBuilder.getPackagesStartingWith(prefix).entrySet())
         {
-            if (!entry.getKey().equals(cwd + "/" + fileName))
+            String packageName = entry.getKey();
+            for (String path : entry.getValue())
             {
-                Triple<String, ArrayList<String>, ArrayList<String>> entryValue = entry.getValue();
-                if (entryValue.packageName != null)
+                if (!path.equals(cwd + "/" + fileName))
                 {
-                    if (entryValue.packageName.startsWith(model.getName() + "." + fTypeCollection.getName()))
+                    if (importPaths.contains(path))
                     {
-                        HashSet<String> importPaths = importList.get(cwd + "/" + fileName);
-                        if (importPaths != null)
-                        {
-                            if (importPaths.contains(entry.getKey()))
-                            {
-                                acceptError(
-                                        "Imported file's package " + entryValue.packageName + " may not start with package "
-                                                + model.getName() + " + " + type + " " + fTypeCollection.getName(), fTypeCollection,
-                                        FrancaPackage.Literals.FMODEL_ELEMENT__NAME, -1, messageAcceptor);
-                            }
-                            else
-                            {
-                                acceptWarning(
-                                        "File's package " + entryValue.packageName + " starts with package "
-                                                + model.getName() + " + " + type + " " + fTypeCollection.getName(), fTypeCollection, null, -1,
-                                        messageAcceptor);
-                            }
-                        }
+                        acceptError(
+                                "Imported file's package " + packageName + " may not start with package "
+                                        + model.getName() + " + " + type + " " + fTypeCollection.getName(), fTypeCollection,
+                                FrancaPackage.Literals.FMODEL_ELEMENT__NAME, -1, messageAcceptor);
+                    }
+                    else
+                    {
+                        acceptWarning(
+                                "File's package " + packageName + " starts with package "
+                                        + model.getName() + " + " + type + " " + fTypeCollection.getName(), fTypeCollection, null, -1,
+                                messageAcceptor);
                     }
                 }
             }
@@ -0,0 +1,106 @@
+// Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+/**
+* @file DBusDerivedInterfaceTest
+*/
+
+#include <thread>
+#include <gtest/gtest.h>
+
+#include <CommonAPI/CommonAPI.hpp>
+
+#ifndef COMMONAPI_INTERNAL_COMPILATION
+#define COMMONAPI_INTERNAL_COMPILATION
+#endif
+
+#include <v1/test/derived/DerivedInterfaceProxy.hpp>
+#include <v1/test/derived/DerivedInterfaceStubDefault.hpp>
+
+#define VERSION v1_0
+
+static const std::string domain = "local";
+static const std::string testAddress = "test.derived.DerivedInterface";
+
+// The base interface is defined in derivedBase.fidl, which the deployment
+// (derivedInterface.fdepl) imports only indirectly.
+class DerivedInterfaceTest: public ::testing::Test {
+protected:
+    void SetUp() {
+        runtime_ = CommonAPI::Runtime::get();
+        ASSERT_TRUE((bool)runtime_);
+
+        testStub_ = std::make_shared<VERSION::test::derived::DerivedInterfaceStubDefault>();
+        ASSERT_TRUE(runtime_->registerService(domain, testAddress, testStub_, "connection"));
+
+        proxy_ = runtime_->buildProxy<VERSION::test::derived::DerivedInterfaceProxy>(domain, testAddress, "client");
+        for (unsigned int i = 0; !proxy_->isAvailable() && i < 100; ++i) {
+            std::this_thread::sleep_for(std::chrono::microseconds(10000));
+        }
+        ASSERT_TRUE(proxy_->isAvailable());
+    }
+
+    void TearDown() {
+        ASSERT_TRUE(runtime_->unregisterService(domain, testStub_->getStubAdapter()->getInterface(), testAddress));
+        std::this_thread::sleep_for(std::chrono::microseconds(30000));
+    }
+
+    std::shared_ptr<CommonAPI::Runtime> runtime_;
+    std::shared_ptr<VERSION::test::derived::DerivedInterfaceProxy<>> proxy_;
+    std::shared_ptr<VERSION::test::derived::DerivedInterfaceStubDefault> testStub_;
+};
+
+/**
+* @test Call a method of the base interface through the derived interface.
+*/
+TEST_F(DerivedInterfaceTest, CallInheritedMethod) {
+    CommonAPI::CallStatus callStatus;
+    uint32_t y = 1;
+
+    proxy_->m0(5, callStatus, y);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(y, 0u);
+}
+
+/**
+* @test Set and get an attribute of the base interface through the derived interface.
+*/
+TEST_F(DerivedInterfaceTest, SetAndGetInheritedAttribute) {
+    CommonAPI::CallStatus callStatus;
+    uint32_t value = 0;
+
+    proxy_->getA0Attribute().setValue(7, callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 7u);
+
+    value = 0;
+    proxy_->getA0Attribute().getValue(callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 7u);
+}
+
+/**
+* @test Call a method and set an attribute of the derived interface itself.
+*/
+TEST_F(DerivedInterfaceTest, CallOwnMembers) {
+    CommonAPI::CallStatus callStatus;
+    uint32_t y = 1;
+
+    proxy_->m1(5, callStatus, y);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(y, 0u);
+
+    uint32_t value = 0;
+    proxy_->getA1Attribute().setValue(9, callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 9u);
+}
+
+#ifndef __NO_MAIN__
+int main(int argc, char** argv) {
+    ::testing::InitGoogleTest(&argc, argv);
+    return RUN_ALL_TESTS();
+}
+#endif
@@ -0,0 +1,135 @@
+// Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+/**
+* @file DBusNotificationThrottlingTest
+*/
+
+#include <functional>
+#include <mutex>
+#include <thread>
+#include <vector>
+#include <gtest/gtest.h>
+
+#include <CommonAPI/CommonAPI.hpp>
+
+#ifndef COMMONAPI_INTERNAL_COMPILATION
+#define COMMONAPI_INTERNAL_COMPILATION
+#endif
+
+#include <v1/test/notification/TestInterfaceProxy.hpp>
+#include <v1/test/notification/TestInterfaceStubDefault.hpp>
+
+#define VERSION v1_0
+
+static const std::string domain = "local";
+static const std::string testAddress = "test.notification.TestInterface";
+
+// a0 has a minimum notification interval of 200ms, a1 and a2 share the
+// coalescing window of 500ms of the interface (see notificationThrottling.fdepl)
+static const int settleTime = 1500;
+
+class NotificationThrottlingTest: public ::testing::Test {
+protected:
+    void SetUp() {
+        runtime_ = CommonAPI::Runtime::get();
+        ASSERT_TRUE((bool)runtime_);
+
+        testStub_ = std::make_shared<VERSION::test::notification::TestInterfaceStubDefault>();
+        ASSERT_TRUE(runtime_->registerService(domain, testAddress, testStub_, "connection"));
+
+        proxy_ = runtime_->buildProxy<VERSION::test::notification::TestInterfaceProxy>(domain, testAddress, "client");
+        for (unsigned int i = 0; !proxy_->isAvailable() && i < 100; ++i) {
+            std::this_thread::sleep_for(std::chrono::microseconds(10000));
+        }
+        ASSERT_TRUE(proxy_->isAvailable());
+    }
+
+    void TearDown() {
+        ASSERT_TRUE(runtime_->unregisterService(domain, testStub_->getStubAdapter()->getInterface(), testAddress));
+        std::this_thread::sleep_for(std::chrono::microseconds(30000));
+    }
+
+    // Subscribe to the changes of an attribute. The first call of the listener
+    // is for the initial value and is not recorded.
+    template<typename _Attribute>
+    void subscribe(_Attribute &_attribute, std::vector<uint32_t> &_values) {
+        std::shared_ptr<bool> isInitial = std::make_shared<bool>(true);
+        _attribute.getChangedEvent().subscribe([this, isInitial, &_values](const uint32_t &_value) {
+            std::lock_guard<std::mutex> itsLock(mutex_);
+            if (*isInitial) {
+                *isInitial = false;
+            } else {
+                _values.push_back(_value);
+            }
+        });
+        std::this_thread::sleep_for(std::chrono::milliseconds(200));
+    }
+
+    std::vector<uint32_t> getValues(const std::vector<uint32_t> &_values) {
+        std::lock_guard<std::mutex> itsLock(mutex_);
+        return _values;
+    }
+
+    std::mutex mutex_;
+    std::vector<uint32_t> a0Values_;
+    std::vector<uint32_t> a1Values_;
+    std::vector<uint32_t> a2Values_;
+
+    std::shared_ptr<CommonAPI::Runtime> runtime_;
+    std::shared_ptr<VERSION::test::notification::TestInterfaceProxy<>> proxy_;
+    std::shared_ptr<VERSION::test::notification::TestInterfaceStubDefault> testStub_;
+};
+
+/**
+* @test Changes within the minimum notification interval of an attribute are
+*       dropped except for the latest one, which is sent when the interval has passed.
+*/
+TEST_F(NotificationThrottlingTest, ThrottledAttributeSendsLatestValue) {
+    subscribe(proxy_->getA0Attribute(), a0Values_);
+
+    for (uint32_t i = 1; i <= 20; i++) {
+        testStub_->setA0Attribute(i);
+    }
+    std::this_thread::sleep_for(std::chrono::milliseconds(settleTime));
+
+    std::vector<uint32_t> received = getValues(a0Values_);
+    ASSERT_FALSE(received.empty());
+    EXPECT_LT(received.size(), 20u);
+    EXPECT_EQ(received.front(), 1u);
+    EXPECT_EQ(received.back(), 20u);
+}
+
+/**
+* @test The first change of a coalesced property is sent immediately. Later
+*       changes within the window are sent at its end, with the latest value of
+*       each changed property.
+*/
+TEST_F(NotificationThrottlingTest, CoalescedPropertiesAreSentAtEndOfWindow) {
+    subscribe(proxy_->getA1Attribute(), a1Values_);
+    subscribe(proxy_->getA2Attribute(), a2Values_);
+
+    testStub_->setA1Attribute(1);
+    testStub_->setA2Attribute(2);
+    testStub_->setA1Attribute(3);
+    testStub_->setA2Attribute(4);
+
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    std::vector<uint32_t> a1Early = getValues(a1Values_);
+    std::vector<uint32_t> a2Early = getValues(a2Values_);
+    EXPECT_EQ(a1Early, std::vector<uint32_t>({ 1 }));
+    EXPECT_TRUE(a2Early.empty());
+
+    std::this_thread::sleep_for(std::chrono::milliseconds(settleTime));
+    EXPECT_EQ(getValues(a1Values_), std::vector<uint32_t>({ 1, 3 }));
+    EXPECT_EQ(getValues(a2Values_), std::vector<uint32_t>({ 4 }));
+}
+
+#ifndef __NO_MAIN__
+int main(int argc, char** argv) {
+    ::testing::InitGoogleTest(&argc, argv);
+    return RUN_ALL_TESTS();
+}
+#endif
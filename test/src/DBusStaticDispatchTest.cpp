@@ -0,0 +1,222 @@
+// Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+/**
+* @file DBusStaticDispatchTest
+*/
+
+#include <atomic>
+#include <thread>
+#include <gtest/gtest.h>
+
+#include <CommonAPI/CommonAPI.hpp>
+
+#ifndef COMMONAPI_INTERNAL_COMPILATION
+#define COMMONAPI_INTERNAL_COMPILATION
+#endif
+
+#include <v1/commonapi/tests/TestInterfaceProxy.hpp>
+#include <v1/commonapi/tests/TestInterfaceStubDefault.hpp>
+#include <v1/commonapi/tests/ExtendedInterfaceProxy.hpp>
+#include <v1/commonapi/tests/ExtendedInterfaceStubDefault.hpp>
+
+#define VERSION v1_0
+
+static const std::string domain = "local";
+static const std::string testAddress = "commonapi.tests.StaticDispatchTest";
+static const std::string extendedAddress = "commonapi.tests.StaticDispatchTestExtended";
+
+// The stub adapters of this test are generated with --static-dispatch into
+// src-gen/dbus-static-dispatch. Members of TestInterface are dispatched by the
+// generated switch of its stub adapter; the stub adapter of ExtendedInterface
+// only knows its own method and passes the inherited members to the
+// dispatcher table.
+class StaticDispatchTestStub : public VERSION::commonapi::tests::TestInterfaceStubDefault {
+public:
+    void testPredefinedTypeMethod(const std::shared_ptr<CommonAPI::ClientId> _client,
+                                  const uint32_t _uint32InValue,
+                                  const std::string _stringInValue,
+                                  const testPredefinedTypeMethodReply_t _reply) {
+        (void)_client;
+        _reply(_uint32InValue + 1, _stringInValue + "!");
+    }
+
+    void testOverloadedMethod(const std::shared_ptr<CommonAPI::ClientId> _client,
+                              const uint8_t _x,
+                              const testOverloadedMethodReply_t _reply) {
+        (void)_client;
+        _reply(_x);
+    }
+
+    void testOverloadedMethod(const std::shared_ptr<CommonAPI::ClientId> _client,
+                              const uint8_t _x, const uint8_t _y,
+                              const testOverloadedMethodReply_t _reply) {
+        (void)_client;
+        _reply((uint8_t)(_x + _y));
+    }
+};
+
+class StaticDispatchExtendedStub : public VERSION::commonapi::tests::ExtendedInterfaceStubDefault {
+public:
+    StaticDispatchExtendedStub() : inInt_(0) {
+    }
+
+    void TestIntMethodExtended(const std::shared_ptr<CommonAPI::ClientId> _client,
+                               const uint32_t _inInt,
+                               const TestIntMethodExtendedReply_t _reply) {
+        (void)_client;
+        inInt_ = _inInt;
+        _reply();
+    }
+
+    void testPredefinedTypeMethod(const std::shared_ptr<CommonAPI::ClientId> _client,
+                                  const uint32_t _uint32InValue,
+                                  const std::string _stringInValue,
+                                  const testPredefinedTypeMethodReply_t _reply) {
+        (void)_client;
+        _reply(_uint32InValue + 2, _stringInValue + "?");
+    }
+
+    std::atomic<uint32_t> inInt_;
+};
+
+class StaticDispatchTest: public ::testing::Test {
+protected:
+    void SetUp() {
+        runtime_ = CommonAPI::Runtime::get();
+        ASSERT_TRUE((bool)runtime_);
+
+        testStub_ = std::make_shared<StaticDispatchTestStub>();
+        ASSERT_TRUE(runtime_->registerService(domain, testAddress, testStub_, "connection"));
+
+        extendedStub_ = std::make_shared<StaticDispatchExtendedStub>();
+        ASSERT_TRUE(runtime_->registerService<VERSION::commonapi::tests::ExtendedInterfaceStub>(
+                domain, extendedAddress, extendedStub_, "connection"));
+
+        proxy_ = runtime_->buildProxy<VERSION::commonapi::tests::TestInterfaceProxy>(domain, testAddress, "client");
+        extendedProxy_ = runtime_->buildProxy<VERSION::commonapi::tests::ExtendedInterfaceProxy>(domain, extendedAddress, "client");
+        for (unsigned int i = 0; (!proxy_->isAvailable() || !extendedProxy_->isAvailable()) && i < 100; ++i) {
+            std::this_thread::sleep_for(std::chrono::microseconds(10000));
+        }
+        ASSERT_TRUE(proxy_->isAvailable());
+        ASSERT_TRUE(extendedProxy_->isAvailable());
+    }
+
+    void TearDown() {
+        ASSERT_TRUE(runtime_->unregisterService(domain,
+                VERSION::commonapi::tests::TestInterface::getInterface(), testAddress));
+        ASSERT_TRUE(runtime_->unregisterService(domain,
+                VERSION::commonapi::tests::ExtendedInterface::getInterface(), extendedAddress));
+        std::this_thread::sleep_for(std::chrono::microseconds(30000));
+    }
+
+    std::shared_ptr<CommonAPI::Runtime> runtime_;
+    std::shared_ptr<VERSION::commonapi::tests::TestInterfaceProxy<>> proxy_;
+    std::shared_ptr<VERSION::commonapi::tests::ExtendedInterfaceProxy<>> extendedProxy_;
+    std::shared_ptr<StaticDispatchTestStub> testStub_;
+    std::shared_ptr<StaticDispatchExtendedStub> extendedStub_;
+};
+
+/**
+* @test Call methods that the generated switch dispatches, including two
+*       overloads of the same name that differ in their signature only.
+*/
+TEST_F(StaticDispatchTest, CallMethods) {
+    CommonAPI::CallStatus callStatus;
+
+    proxy_->testEmptyMethod(callStatus);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+
+    uint32_t uint32OutValue = 0;
+    std::string stringOutValue;
+    proxy_->testPredefinedTypeMethod(41, "static", callStatus, uint32OutValue, stringOutValue);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(uint32OutValue, 42u);
+    EXPECT_EQ(stringOutValue, "static!");
+
+    uint8_t z = 0;
+    proxy_->testOverloadedMethod(5, callStatus, z);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(z, 5);
+
+    z = 0;
+    proxy_->testOverloadedMethod(5, 4, callStatus, z);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(z, 9);
+}
+
+/**
+* @test Set and get attributes through the generated switch.
+*/
+TEST_F(StaticDispatchTest, SetAndGetAttributes) {
+    CommonAPI::CallStatus callStatus;
+
+    uint32_t value = 0;
+    proxy_->getTestPredefinedTypeAttributeAttribute().setValue(7, callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 7u);
+
+    value = 0;
+    proxy_->getTestPredefinedTypeAttributeAttribute().getValue(callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 7u);
+
+    VERSION::commonapi::tests::DerivedTypeCollection::TestArrayUInt64 array = { 1, 2, 3 };
+    VERSION::commonapi::tests::DerivedTypeCollection::TestArrayUInt64 arrayValue;
+    proxy_->getTestDerivedArrayAttributeAttribute().setValue(array, callStatus, arrayValue);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(arrayValue, array);
+
+    arrayValue.clear();
+    proxy_->getTestDerivedArrayAttributeAttribute().getValue(callStatus, arrayValue);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(arrayValue, array);
+}
+
+/**
+* @test Call the own method of the derived interface.
+*/
+TEST_F(StaticDispatchTest, CallExtendedMethod) {
+    CommonAPI::CallStatus callStatus;
+
+    extendedProxy_->TestIntMethodExtended(23, callStatus);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(extendedStub_->inInt_, 23u);
+}
+
+/**
+* @test Call a method and set and get an attribute that the derived interface
+*       inherits.
+*/
+TEST_F(StaticDispatchTest, CallInheritedMembers) {
+    CommonAPI::CallStatus callStatus;
+
+    extendedProxy_->testEmptyMethod(callStatus);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+
+    uint32_t uint32OutValue = 0;
+    std::string stringOutValue;
+    extendedProxy_->testPredefinedTypeMethod(40, "inherited", callStatus, uint32OutValue, stringOutValue);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(uint32OutValue, 42u);
+    EXPECT_EQ(stringOutValue, "inherited?");
+
+    uint32_t value = 0;
+    extendedProxy_->getTestPredefinedTypeAttributeAttribute().setValue(11, callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 11u);
+
+    value = 0;
+    extendedProxy_->getTestPredefinedTypeAttributeAttribute().getValue(callStatus, value);
+    ASSERT_EQ(callStatus, CommonAPI::CallStatus::SUCCESS);
+    EXPECT_EQ(value, 11u);
+}
+
+#ifndef __NO_MAIN__
+int main(int argc, char** argv) {
+    ::testing::InitGoogleTest(&argc, argv);
+    return RUN_ALL_TESTS();
+}
+#endif
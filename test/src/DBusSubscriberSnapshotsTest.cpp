@@ -0,0 +1,218 @@
+// Copyright (C) 2013-2020 Bayerische Motoren Werke Aktiengesellschaft (BMW AG)
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+/**
+* @file DBusSubscriberSnapshotsTest
+*/
+
+#include <atomic>
+#include <memory>
+#include <string>
+#include <thread>
+#include <gtest/gtest.h>
+
+#include <CommonAPI/CommonAPI.hpp>
+
+#ifndef COMMONAPI_INTERNAL_COMPILATION
+#define COMMONAPI_INTERNAL_COMPILATION
+#endif
+
+#include <v1/commonapi/tests/TestInterfaceProxy.hpp>
+#include <v1/commonapi/tests/TestInterfaceStubDefault.hpp>
+
+#define VERSION v1_0
+
+// The stub adapter of this test is generated with --subscriber-snapshots into
+// src-gen/dbus-subscriber-snapshots. The test is built twice: with C++11, where
+// the stub adapter exchanges the snapshots with the atomic shared_ptr functions,
+// and with C++20, where it uses std::atomic<std::shared_ptr> (see CMakeLists.txt).
+#if defined(COMMONAPI_TEST_ATOMIC_SHARED_PTR) && !(__cplusplus >= 202002L && defined(__cpp_lib_atomic_shared_ptr))
+#error "The stub adapter must be built with std::atomic<std::shared_ptr>"
+#endif
+
+static const std::string domain = "local";
+static const std::string testAddress = "commonapi.tests.SubscriberSnapshotsTest";
+static const unsigned int numberOfClients = 3;
+
+class SubscriberSnapshotsTestStub : public VERSION::commonapi::tests::TestInterfaceStubDefault {
+public:
+    size_t getNumberOfSubscribers() {
+        return getSubscribersForTestBroadcastWithOutArgsSelective()->size();
+    }
+};
+
+class SubscriberSnapshotsTest: public ::testing::Test {
+protected:
+    void SetUp() {
+        runtime_ = CommonAPI::Runtime::get();
+        ASSERT_TRUE((bool)runtime_);
+
+        testStub_ = std::make_shared<SubscriberSnapshotsTestStub>();
+        ASSERT_TRUE(runtime_->registerService(domain, testAddress, testStub_, "service"));
+
+        // Each proxy has its own connection and therefore its own client id
+        for (unsigned int i = 0; i < numberOfClients; i++) {
+            proxies_[i] = runtime_->buildProxy<VERSION::commonapi::tests::TestInterfaceProxy>(
+                    domain, testAddress, "client" + std::to_string(i));
+            for (unsigned int j = 0; !proxies_[i]->isAvailable() && j < 100; ++j) {
+                std::this_thread::sleep_for(std::chrono::microseconds(10000));
+            }
+            ASSERT_TRUE(proxies_[i]->isAvailable());
+            received_[i] = 0;
+            lastValue_[i] = 0;
+        }
+    }
+
+    void TearDown() {
+        ASSERT_TRUE(runtime_->unregisterService(domain,
+                VERSION::commonapi::tests::TestInterface::getInterface(), testAddress));
+        std::this_thread::sleep_for(std::chrono::microseconds(30000));
+    }
+
+    void subscribe(unsigned int _client) {
+        subscriptions_[_client] = proxies_[_client]->getTestBroadcastWithOutArgsSelectiveEvent().subscribe(
+                [this, _client](const uint32_t &_uint32Value, const std::string &_stringValue) {
+            EXPECT_EQ(_stringValue, "snapshot");
+            lastValue_[_client] = _uint32Value;
+            received_[_client]++;
+        });
+    }
+
+    void unsubscribe(unsigned int _client) {
+        proxies_[_client]->getTestBroadcastWithOutArgsSelectiveEvent().unsubscribe(subscriptions_[_client]);
+    }
+
+    bool waitForSubscribers(size_t _number) {
+        for (unsigned int i = 0; testStub_->getNumberOfSubscribers() != _number && i < 200; ++i) {
+            std::this_thread::sleep_for(std::chrono::microseconds(10000));
+        }
+        return testStub_->getNumberOfSubscribers() == _number;
+    }
+
+    bool waitForBroadcasts(unsigned int _client, unsigned int _number) {
+        for (unsigned int i = 0; received_[_client] < _number && i < 500; ++i) {
+            std::this_thread::sleep_for(std::chrono::microseconds(10000));
+        }
+        return received_[_client].load() == _number;
+    }
+
+    std::shared_ptr<CommonAPI::Runtime> runtime_;
+    std::shared_ptr<SubscriberSnapshotsTestStub> testStub_;
+    std::shared_ptr<VERSION::commonapi::tests::TestInterfaceProxy<>> proxies_[numberOfClients];
+    VERSION::commonapi::tests::TestInterfaceProxyDefault::TestBroadcastWithOutArgsSelectiveEvent::Subscription
+        subscriptions_[numberOfClients];
+    std::atomic<unsigned int> received_[numberOfClients];
+    std::atomic<uint32_t> lastValue_[numberOfClients];
+};
+
+/**
+* @test Subscribe several clients and send a broadcast to all of them.
+*/
+TEST_F(SubscriberSnapshotsTest, SubscribeAndFire) {
+    for (unsigned int i = 0; i < numberOfClients; i++) {
+        subscribe(i);
+    }
+    ASSERT_TRUE(waitForSubscribers(numberOfClients));
+
+    testStub_->fireTestBroadcastWithOutArgsSelective(1, "snapshot");
+
+    for (unsigned int i = 0; i < numberOfClients; i++) {
+        EXPECT_TRUE(waitForBroadcasts(i, 1));
+        EXPECT_EQ(lastValue_[i].load(), 1u);
+    }
+
+    for (unsigned int i = 0; i < numberOfClients; i++) {
+        unsubscribe(i);
+    }
+    EXPECT_TRUE(waitForSubscribers(0));
+}
+
+/**
+* @test A client unsubscribes while the stub sends broadcasts without a pause.
+*       The sending works on the snapshot it loaded, the remaining clients receive
+*       every broadcast, and the broadcasts sent after the change of the
+*       subscribers only go to the remaining clients.
+*/
+TEST_F(SubscriberSnapshotsTest, UnsubscribeDuringFire) {
+    for (unsigned int i = 0; i < numberOfClients; i++) {
+        subscribe(i);
+    }
+    ASSERT_TRUE(waitForSubscribers(numberOfClients));
+
+    // Keep sending until the stub adapter has removed the unsubscribed client
+    std::atomic<uint32_t> sent(0);
+    std::thread sender([this, &sent]() {
+        for (unsigned int i = 0; testStub_->getNumberOfSubscribers() == numberOfClients && i < 100000; ++i) {
+            testStub_->fireTestBroadcastWithOutArgsSelective(++sent, "snapshot");
+        }
+    });
+
+    for (unsigned int i = 0; received_[1] == 0 && i < 500; ++i) {
+        std::this_thread::sleep_for(std::chrono::microseconds(1000));
+    }
+    ASSERT_GT(received_[1].load(), 0u);
+    unsubscribe(1);
+    sender.join();
+
+    uint32_t numberOfBroadcasts = sent;
+    ASSERT_TRUE(waitForSubscribers(numberOfClients - 1));
+    EXPECT_TRUE(waitForBroadcasts(0, numberOfBroadcasts));
+    EXPECT_TRUE(waitForBroadcasts(2, numberOfBroadcasts));
+    EXPECT_LE(received_[1].load(), numberOfBroadcasts);
+
+    // Send to the remaining subscribers
+    unsigned int receivedByUnsubscribed = received_[1];
+    numberOfBroadcasts++;
+    testStub_->fireTestBroadcastWithOutArgsSelective(numberOfBroadcasts, "snapshot");
+
+    EXPECT_TRUE(waitForBroadcasts(0, numberOfBroadcasts));
+    EXPECT_TRUE(waitForBroadcasts(2, numberOfBroadcasts));
+    EXPECT_EQ(lastValue_[0].load(), numberOfBroadcasts);
+    EXPECT_EQ(lastValue_[2].load(), numberOfBroadcasts);
+    std::this_thread::sleep_for(std::chrono::milliseconds(100));
+    EXPECT_EQ(received_[1].load(), receivedByUnsubscribed);
+
+    unsubscribe(0);
+    unsubscribe(2);
+    EXPECT_TRUE(waitForSubscribers(0));
+}
+
+/**
+* @test Subscribe again after an unsubscription and send to an explicit list
+*       of receivers, which is checked against the current snapshot.
+*/
+TEST_F(SubscriberSnapshotsTest, SubscribeAgainAndFireToReceivers) {
+    subscribe(0);
+    subscribe(1);
+    ASSERT_TRUE(waitForSubscribers(2));
+
+    unsubscribe(1);
+    ASSERT_TRUE(waitForSubscribers(1));
+    subscribe(1);
+    ASSERT_TRUE(waitForSubscribers(2));
+
+    testStub_->fireTestBroadcastWithOutArgsSelective(7, "snapshot");
+    EXPECT_TRUE(waitForBroadcasts(0, 1));
+    EXPECT_TRUE(waitForBroadcasts(1, 1));
+    EXPECT_EQ(lastValue_[1].load(), 7u);
+
+    // The receivers are the current subscribers, so both of them get the broadcast
+    testStub_->fireTestBroadcastWithOutArgsSelective(8, "snapshot",
+            testStub_->getSubscribersForTestBroadcastWithOutArgsSelective());
+    EXPECT_TRUE(waitForBroadcasts(0, 2));
+    EXPECT_TRUE(waitForBroadcasts(1, 2));
+    EXPECT_EQ(lastValue_[0].load(), 8u);
+
+    unsubscribe(0);
+    unsubscribe(1);
+    EXPECT_TRUE(waitForSubscribers(0));
+}
+
+#ifndef __NO_MAIN__
+int main(int argc, char** argv) {
+    ::testing::InitGoogleTest(&argc, argv);
+    return RUN_ALL_TESTS();
+}
+#endif